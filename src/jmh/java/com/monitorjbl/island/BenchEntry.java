@@ -0,0 +1,32 @@
+package com.monitorjbl.island;
+
+/**
+ * Entry the benchmarks run their child JVMs with.
+ */
+public class BenchEntry implements IslandEntry {
+  private final BenchIFace impl = new BenchIFace() {
+    @Override
+    public void noop() { }
+
+    @Override
+    public int addOne(int val) {
+      return val + 1;
+    }
+
+    @Override
+    public int length(byte[] data) {
+      return data.length;
+    }
+
+    @Override
+    public byte[] echo(byte[] data) {
+      return data;
+    }
+  };
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <E> E lookupImplementation(Class<E> cls) {
+    return cls == BenchIFace.class ? (E) impl : null;
+  }
+}
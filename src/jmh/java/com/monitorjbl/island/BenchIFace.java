@@ -0,0 +1,8 @@
+package com.monitorjbl.island;
+
+public interface BenchIFace {
+  void noop();
+  int addOne(int val);
+  int length(byte[] data);
+  byte[] echo(byte[] data);
+}
@@ -0,0 +1,49 @@
+package com.monitorjbl.island;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The child's dispatch of a method id to the implementation, against calling the implementation directly.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+  private DispatchTable table;
+  private BenchIFace direct;
+  private int addOneId;
+  private Object[] args = {1};
+
+  @Setup
+  public void setup() throws Exception {
+    BenchEntry entry = new BenchEntry();
+    table = new DispatchTable(entry);
+    table.register(BenchIFace.class, 0);
+    direct = entry.lookupImplementation(BenchIFace.class);
+    addOneId = RemoteMethods.of(BenchIFace.class).indexOf(BenchIFace.class.getMethod("addOne", int.class));
+  }
+
+  @Benchmark
+  public Object dispatch() throws Throwable {
+    return table.invoke(addOneId, args);
+  }
+
+  @Benchmark
+  public int direct() {
+    return direct.addOne((Integer) args[0]);
+  }
+}
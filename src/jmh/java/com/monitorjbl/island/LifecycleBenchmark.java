@@ -0,0 +1,46 @@
+package com.monitorjbl.island;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from {@code createAndStartup} to the first successful call, which is what a caller waits for when a child is
+ * started on demand.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LifecycleBenchmark {
+  private Island island;
+
+  @Benchmark
+  public int startupToFirstCall() {
+    island = Island.builder()
+        .entryClass(BenchEntry.class)
+        .queueBasePath("target/jmh-queues/lifecycle")
+        .createAndStartup();
+    return island.generateProxy(BenchIFace.class).addOne(1);
+  }
+
+  @TearDown(Level.Invocation)
+  public void shutdown() {
+    if(island != null) {
+      island.close();
+      island = null;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.monitorjbl.island;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency as the payload grows, one way and echoed back, with and without the shared memory region.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PayloadBenchmark {
+  @Param({"0", "1024", "1048576"})
+  private int size;
+
+  @Param({"true", "false"})
+  private boolean sharedMemory;
+
+  private Island island;
+  private BenchIFace iface;
+  private byte[] payload;
+
+  @Setup
+  public void setup() {
+    island = Island.builder()
+        .entryClass(BenchEntry.class)
+        .queueBasePath("target/jmh-queues/payload")
+        .sharedMemorySize(sharedMemory ? IslandChild.DEFAULT_SHARED_MEMORY_SIZE : 0)
+        .createAndStartup();
+    iface = island.generateProxy(BenchIFace.class);
+    payload = new byte[size];
+  }
+
+  @TearDown
+  public void tearDown() {
+    island.close();
+  }
+
+  @Benchmark
+  public int send() {
+    return iface.length(payload);
+  }
+
+  @Benchmark
+  public byte[] echo() {
+    return iface.echo(payload);
+  }
+}
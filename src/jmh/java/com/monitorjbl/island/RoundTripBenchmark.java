@@ -0,0 +1,75 @@
+package com.monitorjbl.island;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through a proxy with no payload to speak of: latency for a single caller and throughput for several,
+ * over each transport and wait strategy. The spinning strategies need a spare core for each bridge thread, so compare
+ * them on a machine with at least four.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RoundTripBenchmark {
+  @Param({"CHRONICLE", "SOCKET", "RING"})
+  public TransportType transport;
+
+  @Param({"BUSY_SPIN", "YIELDING", "BACKOFF", "BLOCKING"})
+  public WaitStrategy waitStrategy;
+
+  private Island island;
+  private BenchIFace iface;
+
+  @Setup
+  public void setup() {
+    island = Island.builder()
+        .entryClass(BenchEntry.class)
+        .queueBasePath("target/jmh-queues/round-trip")
+        .transport(transport)
+        .waitStrategy(waitStrategy)
+        .createAndStartup();
+    iface = island.generateProxy(BenchIFace.class);
+  }
+
+  @TearDown
+  public void tearDown() {
+    island.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void emptyLatency() {
+    iface.noop();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int primitiveLatency() {
+    return iface.addOne(1);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(4)
+  public int primitiveThroughput() {
+    return iface.addOne(1);
+  }
+}
@@ -0,0 +1,82 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCMessage;
+import net.openhft.chronicle.bytes.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an invocation into bytes and back, without any queue or second process involved.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+  @Param({"primitive", "string", "1024"})
+  private String payload;
+
+  @Param({"TaggedCodec", "SerializationCodec"})
+  private String codec;
+
+  private Codec encoder;
+  private Object argument;
+  private RPCMessage message;
+  private Bytes<ByteBuffer> bytes;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    encoder = (Codec) Class.forName(Codec.class.getPackage().getName() + "." + codec).newInstance();
+    if(payload.equals("primitive")) {
+      argument = 1;
+    } else if(payload.equals("string")) {
+      argument = "com.monitorjbl.island.TestIFace";
+    } else {
+      argument = new byte[Integer.parseInt(payload)];
+    }
+    message = RPCMessage.invocation();
+    message.setId(1);
+    message.setMethodId(1);
+    message.setMethodParameters(Collections.singletonList(encoder.encode(argument)));
+    bytes = Bytes.elasticByteBuffer();
+    WireFormat.write(message, bytes, encoder);
+  }
+
+  @Benchmark
+  public byte[] serializeArgument() {
+    return encoder.encode(argument);
+  }
+
+  @Benchmark
+  public Object deserializeArgument() {
+    return encoder.decode(message.getMethodParameters().get(0));
+  }
+
+  @Benchmark
+  public Bytes<ByteBuffer> encodeInvocation() {
+    bytes.clear();
+    WireFormat.write(message, bytes, encoder);
+    return bytes;
+  }
+
+  @Benchmark
+  public Object decodeInvocation() {
+    bytes.readPosition(0);
+    return WireFormat.read(bytes, encoder);
+  }
+}
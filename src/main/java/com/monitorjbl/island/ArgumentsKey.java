@@ -0,0 +1,43 @@
+package com.monitorjbl.island;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Map key that compares serialized argument lists by the contents of their bytes.
+ */
+class ArgumentsKey {
+  private final List<byte[]> args;
+  private final int hash;
+
+  ArgumentsKey(List<byte[]> args) {
+    this.args = args;
+    int hash = 1;
+    for(byte[] arg : args) {
+      hash = 31 * hash + Arrays.hashCode(arg);
+    }
+    this.hash = hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if(!(o instanceof ArgumentsKey)) {
+      return false;
+    }
+    List<byte[]> other = ((ArgumentsKey) o).args;
+    if(other.size() != args.size()) {
+      return false;
+    }
+    for(int i = 0; i < args.size(); i++) {
+      if(!Arrays.equals(args.get(i), other.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+}
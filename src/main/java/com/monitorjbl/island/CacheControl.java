@@ -0,0 +1,67 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCMessage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Lets code running in a child drop results the parent has cached for {@link Cached} methods, for instance after the
+ * data behind them has changed. Invalidations are sent to the parent asynchronously. Outside of a child, such as in a
+ * plain unit test of an implementation, they do nothing.
+ */
+public final class CacheControl {
+  private static volatile DispatchTable dispatchTable;
+  private static volatile IPCBridge bridge;
+  private static volatile Codec codec;
+
+  private CacheControl() { }
+
+  static void bind(DispatchTable dispatchTable, IPCBridge bridge, Codec codec) {
+    CacheControl.dispatchTable = dispatchTable;
+    CacheControl.bridge = bridge;
+    CacheControl.codec = codec;
+  }
+
+  /**
+   * Drops every cached result of every method.
+   */
+  public static void invalidateAll() {
+    send(-1, Collections.emptyList());
+  }
+
+  /**
+   * Drops every cached result of the methods of {@code iface} called {@code method}.
+   */
+  public static void invalidate(Class<?> iface, String method) {
+    DispatchTable table = dispatchTable;
+    if(table != null) {
+      for(int methodId : table.ids(iface, method)) {
+        send(methodId, Collections.emptyList());
+      }
+    }
+  }
+
+  /**
+   * Drops the result cached for calling {@code method} of {@code iface} with {@code args}.
+   */
+  public static void invalidate(Class<?> iface, String method, Object... args) {
+    DispatchTable table = dispatchTable;
+    if(table != null) {
+      List<byte[]> key = Arrays.stream(args).map(codec::encode).collect(toList());
+      for(int methodId : table.ids(iface, method)) {
+        send(methodId, key);
+      }
+    }
+  }
+
+  private static void send(int methodId, List<byte[]> key) {
+    IPCBridge bridge = CacheControl.bridge;
+    if(bridge != null) {
+      bridge.post(RPCMessage.invalidate(methodId, key));
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.monitorjbl.island;
+
+/**
+ * Snapshot of one {@link Cached} method's result cache.
+ */
+public class CacheStats {
+  private final String method;
+  private final int size;
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final long expirations;
+  private final long invalidations;
+
+  CacheStats(String method, int size, long hits, long misses, long evictions, long expirations, long invalidations) {
+    this.method = method;
+    this.size = size;
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.expirations = expirations;
+    this.invalidations = invalidations;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Fraction of lookups answered from the cache, or 0 before the first one.
+   */
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : hits / (double) lookups;
+  }
+
+  /**
+   * Entries dropped to stay within the maximum size.
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Entries dropped because their time to live ran out.
+   */
+  public long getExpirations() {
+    return expirations;
+  }
+
+  /**
+   * Entries dropped because the child invalidated them.
+   */
+  public long getInvalidations() {
+    return invalidations;
+  }
+
+  @Override
+  public String toString() {
+    return method + "[size=" + size + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+        + ", expirations=" + expirations + ", invalidations=" + invalidations + "]";
+  }
+}
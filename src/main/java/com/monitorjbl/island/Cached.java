@@ -0,0 +1,30 @@
+package com.monitorjbl.island;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of a method in the parent, so repeated calls with equal arguments skip the round trip to the
+ * child. Only for methods whose result depends on nothing but their arguments; every caller of a cached entry gets the
+ * same instance, so results shouldn't be mutated either. Entries are keyed on the serialized arguments, which are
+ * always sent inline rather than through shared memory, and the child can drop them early with {@link CacheControl}.
+ * Works with plain and {@link java.util.concurrent.CompletableFuture} results, not streamed or one-way methods.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cached {
+  /**
+   * How long a result is served from the cache after it was fetched.
+   */
+  long ttl() default 60;
+
+  TimeUnit unit() default TimeUnit.SECONDS;
+
+  /**
+   * Most results kept for the method. The least recently used one is evicted to make room.
+   */
+  int maxSize() default 1024;
+}
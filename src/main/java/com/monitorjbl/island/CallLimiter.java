@@ -0,0 +1,81 @@
+package com.monitorjbl.island;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the number of invocations a bridge has in flight. Each call takes a slot before it is sent and every response
+ * hands it back, so the child's advertised capacity works as a pool of credits. Taking and returning a free slot is a
+ * single CAS; only callers that have to wait touch the lock.
+ */
+class CallLimiter {
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Object lock = new Object();
+  private volatile int limit;
+  private volatile int waiters;
+
+  CallLimiter(int limit) {
+    this.limit = limit;
+  }
+
+  boolean tryAcquire() {
+    while(true) {
+      int current = inFlight.get();
+      if(current >= limit) {
+        return false;
+      }
+      if(inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Waits up to {@code timeoutNanos} for a slot, or indefinitely if it is negative.
+   */
+  boolean acquire(long timeoutNanos) throws InterruptedException {
+    if(tryAcquire()) {
+      return true;
+    }
+    long deadline = System.nanoTime() + timeoutNanos;
+    synchronized(lock) {
+      waiters++;
+      try {
+        while(!tryAcquire()) {
+          if(timeoutNanos < 0) {
+            lock.wait();
+          } else {
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0) {
+              return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+          }
+        }
+        return true;
+      } finally {
+        waiters--;
+      }
+    }
+  }
+
+  void release() {
+    inFlight.decrementAndGet();
+    if(waiters > 0) {
+      synchronized(lock) {
+        lock.notify();
+      }
+    }
+  }
+
+  void setLimit(int limit) {
+    this.limit = limit;
+    synchronized(lock) {
+      lock.notifyAll();
+    }
+  }
+
+  int limit() {
+    return limit;
+  }
+}
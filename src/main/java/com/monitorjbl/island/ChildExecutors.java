@@ -0,0 +1,127 @@
+package com.monitorjbl.island;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The executors a child runs invocations on: a default one from the builder settings, plus any named ones that
+ * registered classes ask for with {@link ExecuteOn}. Like the dispatch table, the executor for each method is looked up
+ * once at registration and invocations only index an array.
+ */
+class ChildExecutors {
+  static final String DEFAULT = "default";
+  private static final Logger log = LoggerFactory.getLogger(ChildExecutors.class);
+
+  private final int defaultThreads;
+  private final CountingExecutor defaultExecutor;
+  private final Map<String, CountingExecutor> named = new LinkedHashMap<>();
+  private volatile CountingExecutor[] byMethod = new CountingExecutor[0];
+
+  ChildExecutors(ExecutorType type, int threads) {
+    this.defaultThreads = threads;
+    this.defaultExecutor = new CountingExecutor(DEFAULT, type, threads);
+  }
+
+  synchronized void register(Class<?> cls, int baseId) {
+    List<Method> methods = RemoteMethods.of(cls);
+    CountingExecutor[] table = Arrays.copyOf(byMethod, Math.max(byMethod.length, baseId + methods.size()));
+    for(int i = 0; i < methods.size(); i++) {
+      ExecuteOn annotation = methods.get(i).getAnnotation(ExecuteOn.class);
+      if(annotation == null) {
+        annotation = cls.getAnnotation(ExecuteOn.class);
+      }
+      table[baseId + i] = annotation == null ? defaultExecutor : named(annotation);
+    }
+    byMethod = table;
+  }
+
+  private CountingExecutor named(ExecuteOn annotation) {
+    if(DEFAULT.equals(annotation.value())) {
+      return defaultExecutor;
+    }
+    int threads = annotation.threads() > 0 ? annotation.threads() : defaultThreads;
+    CountingExecutor executor = named.get(annotation.value());
+    if(executor == null) {
+      executor = new CountingExecutor(annotation.value(), annotation.type(), threads);
+      named.put(annotation.value(), executor);
+      log.debug("Created executor {}", annotation.value());
+    } else if(executor.type != annotation.type() || executor.threads != threads) {
+      log.warn("Executor {} is already a {} with {} threads, ignoring {}", annotation.value(), executor.type,
+          executor.threads, annotation);
+    }
+    return executor;
+  }
+
+  void execute(int methodId, Runnable task) {
+    CountingExecutor[] table = byMethod;
+    CountingExecutor executor = methodId >= 0 && methodId < table.length && table[methodId] != null
+        ? table[methodId]
+        : defaultExecutor;
+    executor.execute(task);
+  }
+
+  synchronized List<ExecutorStats> stats() {
+    List<ExecutorStats> stats = new ArrayList<>();
+    stats.add(defaultExecutor.stats());
+    for(CountingExecutor executor : named.values()) {
+      stats.add(executor.stats());
+    }
+    return stats;
+  }
+
+  /**
+   * Counts the tasks of any executor. A {@link WorkerPool} counts them itself; tasks for anything else are wrapped to
+   * be counted, which works the same for thread pools and ForkJoin pools.
+   */
+  private static class CountingExecutor {
+    private final String name;
+    private final ExecutorType type;
+    private final int threads;
+    private final ExecutorService executor;
+    private final WorkerPool pool;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+
+    CountingExecutor(String name, ExecutorType type, int threads) {
+      this.name = name;
+      this.type = type;
+      this.threads = threads;
+      this.executor = type.create(name, threads);
+      this.pool = executor instanceof WorkerPool ? (WorkerPool) executor : null;
+    }
+
+    void execute(Runnable task) {
+      submitted.incrementAndGet();
+      if(pool != null) {
+        pool.execute(task);
+        return;
+      }
+      executor.execute(() -> {
+        active.incrementAndGet();
+        try {
+          task.run();
+        } finally {
+          active.decrementAndGet();
+          completed.incrementAndGet();
+        }
+      });
+    }
+
+    ExecutorStats stats() {
+      long done = pool != null ? pool.completed() : completed.get();
+      int running = pool != null ? pool.active() : active.get();
+      return new ExecutorStats(name, type, threads, running, Math.max(0, submitted.get() - done - running), done);
+    }
+  }
+}
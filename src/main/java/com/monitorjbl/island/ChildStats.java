@@ -0,0 +1,30 @@
+package com.monitorjbl.island;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * What a child reports about itself in reply to a ping.
+ */
+class ChildStats implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final List<ExecutorStats> executors;
+  private final long allocatedBytes;
+
+  ChildStats(List<ExecutorStats> executors, long allocatedBytes) {
+    this.executors = executors;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  List<ExecutorStats> getExecutors() {
+    return executors;
+  }
+
+  /**
+   * Bytes allocated so far by the child's live threads, or -1 if its JVM can't tell.
+   */
+  long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+}
@@ -0,0 +1,75 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.ChronicleQueue;
+import net.openhft.chronicle.queue.ChronicleQueueBuilder;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.wire.DocumentContext;
+
+import java.io.File;
+
+/**
+ * {@link TransportType#CHRONICLE}: each frame is one document in a Chronicle queue, one queue per direction. Cycles
+ * the tailer has read past are deleted as it goes.
+ */
+class ChronicleTransport implements Transport {
+  private final ChronicleQueue txQueue;
+  private final ChronicleQueue rxQueue;
+  private final ExcerptAppender appender;
+  private final ExcerptTailer tailer;
+  private final CycleRetention retention;
+  private DocumentContext writing;
+  private DocumentContext reading;
+
+  ChronicleTransport(File txPath, File rxPath, RollCycle rollCycle) {
+    this.txQueue = ChronicleQueueBuilder.single(txPath.getAbsolutePath())
+        .blockSize(5 * 1024 * 1024)
+        .rollCycle(rollCycle)
+        .build();
+    this.rxQueue = ChronicleQueueBuilder.single(rxPath.getAbsolutePath())
+        .rollCycle(rollCycle)
+        .build();
+    this.appender = txQueue.acquireAppender();
+    this.tailer = rxQueue.createTailer();
+    this.retention = new CycleRetention(rxPath, rollCycle);
+  }
+
+  @Override
+  public Bytes<?> beginWrite() {
+    writing = appender.writingDocument();
+    return writing.wire().bytes();
+  }
+
+  @Override
+  public boolean endWrite() {
+    writing.close();
+    writing = null;
+    return true;
+  }
+
+  @Override
+  public Bytes<?> beginRead() {
+    DocumentContext dc = tailer.readingDocument();
+    if(!dc.isPresent() || !dc.isData()) {
+      dc.close();
+      return null;
+    }
+    reading = dc;
+    retention.consumed(tailer.cycle());
+    return dc.wire().bytes();
+  }
+
+  @Override
+  public void endRead() {
+    reading.close();
+    reading = null;
+  }
+
+  @Override
+  public void close() {
+    txQueue.close();
+    rxQueue.close();
+  }
+}
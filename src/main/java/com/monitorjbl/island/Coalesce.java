@@ -0,0 +1,18 @@
+package com.monitorjbl.island;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lets concurrent calls to a method with equal arguments share one invocation in the child. A call made while an
+ * identical one is still in flight doesn't send anything, it waits for that call and gets the same result or error.
+ * Arguments are compared by their serialized form, which is always sent inline rather than through shared memory.
+ * Only for methods without side effects; works with plain and {@link java.util.concurrent.CompletableFuture} results,
+ * not streamed or one-way methods.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Coalesce {
+}
@@ -0,0 +1,61 @@
+package com.monitorjbl.island;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Turns arguments and results into the bytes that cross the bridge, and back. The parent and the child each create an
+ * instance of the same codec class with its no-arg constructor and register the same classes with it in the same
+ * order. Implementations must be thread safe, and values they have no encoding of their own for, which includes the
+ * island's own internal types, must round trip through Java serialization.
+ */
+public interface Codec {
+  byte[] encode(Object value);
+
+  /**
+   * Writes the bytes {@link #encode(Object)} would return to {@code out}. The island passes a reusable buffer here, so
+   * codecs that write into it directly instead of returning a new array don't create garbage per value.
+   */
+  default void encode(Object value, OutputStream out) throws IOException {
+    out.write(encode(value));
+  }
+
+  /**
+   * Encodes a primitive argument without boxing it first, when the codec supports that. Generated proxies call these
+   * for primitive parameters; the bytes must decode to the boxed value.
+   */
+  default void encode(int value, OutputStream out) throws IOException {
+    encode((Object) value, out);
+  }
+
+  default void encode(long value, OutputStream out) throws IOException {
+    encode((Object) value, out);
+  }
+
+  default void encode(double value, OutputStream out) throws IOException {
+    encode((Object) value, out);
+  }
+
+  default void encode(boolean value, OutputStream out) throws IOException {
+    encode((Object) value, out);
+  }
+
+  Object decode(byte[] bytes);
+
+  /**
+   * Decodes a value from {@code length} bytes of {@code bytes} starting at {@code offset}. The island decodes arguments
+   * and responses out of buffers it reuses, so codecs that can read a range in place don't need a copy of it. The
+   * value must not hold on to the array.
+   */
+  default Object decode(byte[] bytes, int offset, int length) {
+    return decode(Arrays.copyOfRange(bytes, offset, offset + length));
+  }
+
+  /**
+   * Registers a class the application sends a lot of, so the codec can encode it more compactly. Called before any
+   * value is encoded or decoded. Codecs that have no use for it can ignore it.
+   */
+  default void register(Class<?> type) {
+  }
+}
@@ -0,0 +1,186 @@
+package com.monitorjbl.island;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Map of primitive long keys to values, used for the bridge's table of pending calls. Keys are spread over a fixed
+ * number of lock stripes, and each stripe is an open-addressing table with linear probing, so lookups neither box the
+ * key nor allocate entry objects. The key 0 is reserved to mark empty slots.
+ */
+class ConcurrentLongMap<V> {
+  private static final int STRIPES = 16;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Stripe<V>[] stripes;
+
+  @SuppressWarnings("unchecked")
+  ConcurrentLongMap() {
+    stripes = new Stripe[STRIPES];
+    for(int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe<>();
+    }
+  }
+
+  void put(long key, V value) {
+    if(key == 0) {
+      throw new IllegalArgumentException("Key 0 is reserved");
+    }
+    long hash = mix(key);
+    Stripe<V> stripe = stripes[(int) hash & (STRIPES - 1)];
+    synchronized(stripe) {
+      stripe.put(key, hash >>> 4, value);
+    }
+  }
+
+  V get(long key) {
+    long hash = mix(key);
+    Stripe<V> stripe = stripes[(int) hash & (STRIPES - 1)];
+    synchronized(stripe) {
+      return stripe.get(key, hash >>> 4);
+    }
+  }
+
+  V remove(long key) {
+    long hash = mix(key);
+    Stripe<V> stripe = stripes[(int) hash & (STRIPES - 1)];
+    synchronized(stripe) {
+      return stripe.remove(key, hash >>> 4);
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for(Stripe<V> stripe : stripes) {
+      synchronized(stripe) {
+        size += stripe.size;
+      }
+    }
+    return size;
+  }
+
+  void forEach(Consumer<V> consumer) {
+    for(Stripe<V> stripe : stripes) {
+      synchronized(stripe) {
+        for(Object value : stripe.values) {
+          if(value != null) {
+            consumer.accept(cast(value));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes every entry, then hands each removed value to {@code consumer} once no lock is held.
+   */
+  void clear(Consumer<V> consumer) {
+    List<V> removed = new ArrayList<>();
+    for(Stripe<V> stripe : stripes) {
+      synchronized(stripe) {
+        for(Object value : stripe.values) {
+          if(value != null) {
+            removed.add(cast(value));
+          }
+        }
+        stripe.clear();
+      }
+    }
+    removed.forEach(consumer);
+  }
+
+  static long mix(long key) {
+    //murmur3 finalizer, sequential ids end up spread over both the stripes and the slots
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> V cast(Object value) {
+    return (V) value;
+  }
+
+  private static class Stripe<V> {
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    void put(long key, long hash, V value) {
+      if((size + 1) * 2 > keys.length) {
+        resize();
+      }
+      int mask = keys.length - 1;
+      int slot = (int) hash & mask;
+      while(keys[slot] != 0 && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if(keys[slot] == 0) {
+        size++;
+      }
+      keys[slot] = key;
+      values[slot] = value;
+    }
+
+    V get(long key, long hash) {
+      int mask = keys.length - 1;
+      for(int slot = (int) hash & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+        if(keys[slot] == key) {
+          return cast(values[slot]);
+        }
+      }
+      return null;
+    }
+
+    V remove(long key, long hash) {
+      int mask = keys.length - 1;
+      int slot = (int) hash & mask;
+      while(keys[slot] != key) {
+        if(keys[slot] == 0) {
+          return null;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      V value = cast(values[slot]);
+      size--;
+
+      //shift later entries of the probe chain back so lookups never stop early at the freed slot
+      int free = slot;
+      for(int next = (free + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+        int home = (int) (mix(keys[next]) >>> 4) & mask;
+        if(((next - home) & mask) >= ((next - free) & mask)) {
+          keys[free] = keys[next];
+          values[free] = values[next];
+          free = next;
+        }
+      }
+      keys[free] = 0;
+      values[free] = null;
+      return value;
+    }
+
+    void clear() {
+      keys = new long[INITIAL_CAPACITY];
+      values = new Object[INITIAL_CAPACITY];
+      size = 0;
+    }
+
+    private void resize() {
+      long[] oldKeys = keys;
+      Object[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new Object[oldValues.length * 2];
+      size = 0;
+      for(int i = 0; i < oldKeys.length; i++) {
+        if(oldKeys[i] != 0) {
+          put(oldKeys[i], mix(oldKeys[i]) >>> 4, cast(oldValues[i]));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Deletes the files of queue cycles the bridge's tailer has read past. Each queue has a single reader, the other
+ * process, so once its tailer has moved on to a newer cycle nothing will read the older ones again. Cycle files are
+ * named after their start time in the roll cycle's fixed-width format, so they sort in cycle order by name.
+ */
+class CycleRetention {
+  private static final Logger log = LoggerFactory.getLogger(CycleRetention.class);
+
+  private final File directory;
+  private final SimpleDateFormat format;
+  private final long length;
+  private int lastCycle = Integer.MIN_VALUE;
+
+  CycleRetention(File directory, RollCycle rollCycle) {
+    this.directory = directory;
+    this.format = new SimpleDateFormat(rollCycle.format());
+    this.format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    this.length = rollCycle.length();
+  }
+
+  /**
+   * Called by the tailer's thread with the cycle it has just read from. Only does any work when the cycle changes.
+   */
+  void consumed(int cycle) {
+    if(cycle == lastCycle) {
+      return;
+    }
+    lastCycle = cycle;
+    String current = fileName(cycle);
+    File[] consumed = directory.listFiles((dir, name) ->
+        name.endsWith(SingleChronicleQueue.SUFFIX) && name.compareTo(current) < 0);
+    if(consumed == null) {
+      return;
+    }
+    for(File file : consumed) {
+      //the writer has already rolled past it, so the file can go even if its mapping hasn't been released yet
+      if(file.delete()) {
+        log.debug("Deleted consumed cycle {}", file);
+      } else {
+        log.debug("Could not delete consumed cycle {}, will retry on the next roll", file);
+      }
+    }
+  }
+
+  String fileName(int cycle) {
+    return format.format(new Date(cycle * length)) + SingleChronicleQueue.SUFFIX;
+  }
+}
@@ -0,0 +1,78 @@
+package com.monitorjbl.island;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Child-side table of method ids to pre-bound method handles. Classes are resolved once when the parent registers
+ * them; after that an invocation is an array index and an {@code invokeExact}, with no reflection lookups.
+ */
+class DispatchTable {
+  private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+  private final IslandEntry entry;
+  private volatile MethodHandle[] handles = new MethodHandle[0];
+  private final Map<Class<?>, Integer> baseIds = new ConcurrentHashMap<>();
+
+  DispatchTable(IslandEntry entry) {
+    this.entry = entry;
+  }
+
+  /**
+   * Binds every method of {@code cls} to the entry's implementation starting at {@code baseId}, and returns the
+   * signatures in id order so the parent can confirm both sides see the same class.
+   */
+  synchronized List<String> register(Class<?> cls, int baseId) throws IllegalAccessException {
+    Object impl = entry.lookupImplementation(cls);
+    if(impl == null) {
+      throw new IllegalArgumentException("No implementation of " + cls.getName() + " available");
+    }
+
+    List<Method> methods = RemoteMethods.of(cls);
+    MethodHandle[] table = Arrays.copyOf(handles, Math.max(handles.length, baseId + methods.size()));
+    List<String> signatures = new ArrayList<>(methods.size());
+    for(int i = 0; i < methods.size(); i++) {
+      Method m = methods.get(i);
+      m.setAccessible(true);
+      table[baseId + i] = MethodHandles.lookup().unreflect(m)
+          .bindTo(impl)
+          .asSpreader(Object[].class, m.getParameterCount())
+          .asType(INVOKER_TYPE);
+      signatures.add(RemoteMethods.signature(m));
+    }
+    handles = table;
+    baseIds.put(cls, baseId);
+    return signatures;
+  }
+
+  /**
+   * Ids of the methods of {@code cls} called {@code name}, or none if the parent hasn't registered it.
+   */
+  int[] ids(Class<?> cls, String name) {
+    Integer baseId = baseIds.get(cls);
+    if(baseId == null) {
+      return new int[0];
+    }
+    List<Method> methods = RemoteMethods.of(cls);
+    return IntStream.range(0, methods.size())
+        .filter(i -> methods.get(i).getName().equals(name))
+        .map(i -> baseId + i)
+        .toArray();
+  }
+
+  Object invoke(int methodId, Object[] args) throws Throwable {
+    MethodHandle[] table = handles;
+    if(methodId < 0 || methodId >= table.length || table[methodId] == null) {
+      throw new IllegalArgumentException("Unknown method id " + methodId);
+    }
+    return (Object) table[methodId].invokeExact(args);
+  }
+}
@@ -0,0 +1,192 @@
+package com.monitorjbl.island;
+
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable byte array that values are encoded into, and that can be reset and reused between calls. Besides plain
+ * bytes it writes the big-endian primitives {@link TaggedCodec} uses, and length-prefixed blobs laid out exactly like
+ * {@link WireFormat} frames invocation arguments, so a call's arguments can be copied onto the queue in one go.
+ */
+class EncodeBuffer extends OutputStream {
+  private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+  private byte[] buffer;
+  private int size;
+  private int blobs;
+
+  EncodeBuffer() {
+    this(64);
+  }
+
+  EncodeBuffer(int capacity) {
+    this.buffer = new byte[capacity];
+  }
+
+  void reset() {
+    size = 0;
+    blobs = 0;
+  }
+
+  /**
+   * Empties the buffer and makes room for {@code length} bytes, returning the array for the caller to fill in.
+   */
+  byte[] reserve(int length) {
+    reset();
+    ensure(length);
+    size = length;
+    return buffer;
+  }
+
+  /**
+   * The underlying array, valid up to {@link #size()} until the next write.
+   */
+  byte[] array() {
+    return buffer;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Number of blobs written since the last reset.
+   */
+  int blobs() {
+    return blobs;
+  }
+
+  @Override
+  public void write(int value) {
+    ensure(1);
+    buffer[size++] = (byte) value;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    ensure(length);
+    System.arraycopy(bytes, offset, buffer, size, length);
+    size += length;
+  }
+
+  void writeShort(int value) {
+    ensure(2);
+    buffer[size++] = (byte) (value >>> 8);
+    buffer[size++] = (byte) value;
+  }
+
+  void writeInt(int value) {
+    ensure(4);
+    putInt(size, value);
+    size += 4;
+  }
+
+  void writeLong(long value) {
+    writeInt((int) (value >>> 32));
+    writeInt((int) value);
+  }
+
+  /**
+   * Writes a big-endian length followed by the string's UTF-8 bytes, without creating an array for them. Unlike
+   * {@code getBytes(UTF_8)}, an unpaired surrogate is not replaced with '?' but written as its own three bytes, the
+   * way {@code DataOutputStream.writeUTF} does, so every String comes back exactly as it was.
+   */
+  void writeUtf8(String value) {
+    int length = value.length();
+    ensure(4 + length * 3);
+    int start = size;
+    size += 4;
+    for(int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if(c < 0x80) {
+        buffer[size++] = (byte) c;
+      } else if(c < 0x800) {
+        buffer[size++] = (byte) (0xC0 | c >> 6);
+        buffer[size++] = (byte) (0x80 | c & 0x3F);
+      } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[size++] = (byte) (0xF0 | codePoint >> 18);
+        buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        buffer[size++] = (byte) (0x80 | codePoint & 0x3F);
+      } else {
+        buffer[size++] = (byte) (0xE0 | c >> 12);
+        buffer[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+        buffer[size++] = (byte) (0x80 | c & 0x3F);
+      }
+    }
+    putInt(start, size - start - 4);
+  }
+
+  /**
+   * Starts a blob and returns the position to pass to {@link #endBlob(int)} once its contents have been written.
+   */
+  int beginBlob() {
+    ensure(4);
+    int start = size;
+    size += 4;
+    return start;
+  }
+
+  /**
+   * Fills in the length of a blob. It is written in native byte order, like every int on the queue.
+   */
+  void endBlob(int start) {
+    int length = size - start - 4;
+    if(LITTLE_ENDIAN) {
+      buffer[start] = (byte) length;
+      buffer[start + 1] = (byte) (length >>> 8);
+      buffer[start + 2] = (byte) (length >>> 16);
+      buffer[start + 3] = (byte) (length >>> 24);
+    } else {
+      putInt(start, length);
+    }
+    blobs++;
+  }
+
+  /**
+   * Copies each blob out into an array of its own.
+   */
+  List<byte[]> blobList() {
+    List<byte[]> list = new ArrayList<>(blobs);
+    int position = 0;
+    while(position < size) {
+      int length = blobLength(buffer, position);
+      list.add(Arrays.copyOfRange(buffer, position + 4, position + 4 + length));
+      position += 4 + length;
+    }
+    return list;
+  }
+
+  /**
+   * The length of the blob that starts at {@code position} in {@code array}, as {@link #endBlob(int)} wrote it.
+   */
+  static int blobLength(byte[] array, int position) {
+    if(LITTLE_ENDIAN) {
+      return (array[position] & 0xFF) | (array[position + 1] & 0xFF) << 8
+          | (array[position + 2] & 0xFF) << 16 | (array[position + 3] & 0xFF) << 24;
+    }
+    return (array[position] & 0xFF) << 24 | (array[position + 1] & 0xFF) << 16
+        | (array[position + 2] & 0xFF) << 8 | array[position + 3] & 0xFF;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  private void putInt(int position, int value) {
+    buffer[position] = (byte) (value >>> 24);
+    buffer[position + 1] = (byte) (value >>> 16);
+    buffer[position + 2] = (byte) (value >>> 8);
+    buffer[position + 3] = (byte) value;
+  }
+
+  private void ensure(int length) {
+    if(size + length > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.monitorjbl.island;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated interface's methods, or a single method, on a named executor in the child instead of the
+ * child's default one, so slow or blocking calls can't starve everything else. A method annotation takes precedence
+ * over one on its interface. Executors with the same name are shared; the first registration to name one decides its
+ * type and size.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface ExecuteOn {
+  String value();
+
+  ExecutorType type() default ExecutorType.FIXED;
+
+  /**
+   * Pool size or parallelism. 0 uses the child's default thread count.
+   */
+  int threads() default 0;
+}
@@ -0,0 +1,62 @@
+package com.monitorjbl.island;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of one of a child's executors, as reported with its last ping.
+ */
+public class ExecutorStats implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final String name;
+  private final ExecutorType type;
+  private final int threads;
+  private final int active;
+  private final long queued;
+  private final long completed;
+
+  ExecutorStats(String name, ExecutorType type, int threads, int active, long queued, long completed) {
+    this.name = name;
+    this.type = type;
+    this.threads = threads;
+    this.active = active;
+    this.queued = queued;
+    this.completed = completed;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public ExecutorType getType() {
+    return type;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Invocations running right now.
+   */
+  public int getActive() {
+    return active;
+  }
+
+  /**
+   * Invocations waiting for a thread.
+   */
+  public long getQueued() {
+    return queued;
+  }
+
+  public long getCompleted() {
+    return completed;
+  }
+
+  @Override
+  public String toString() {
+    return name + " (" + type + ", " + threads + " threads) active=" + active + ", queued=" + queued
+        + ", completed=" + completed;
+  }
+}
@@ -0,0 +1,33 @@
+package com.monitorjbl.island;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How a child runs the invocations it receives.
+ */
+public enum ExecutorType {
+  /**
+   * A fixed number of threads sharing one queue, which hands invocations over without creating anything per call.
+   * Suits blocking calls when the thread count is sized for them.
+   */
+  FIXED {
+    @Override
+    ExecutorService create(String name, int threads) {
+      return new WorkerPool(name, threads);
+    }
+  },
+
+  /**
+   * A work-stealing ForkJoin pool with the given parallelism. Suits CPU-bound calls, especially ones that fork work of
+   * their own.
+   */
+  WORK_STEALING {
+    @Override
+    ExecutorService create(String name, int threads) {
+      return Executors.newWorkStealingPool(threads);
+    }
+  };
+
+  abstract ExecutorService create(String name, int threads);
+}
@@ -0,0 +1,46 @@
+package com.monitorjbl.island;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hash ring over a set of named nodes. Each node is placed at a number of pseudo-random points on the ring
+ * derived from its name, so a node keeps the same points no matter which other nodes are present, and adding or
+ * removing one only moves the keys that land next to its points.
+ */
+class HashRing<T> {
+  static final int POINTS_PER_NODE = 160;
+
+  private final long[] points;
+  private final Object[] owners;
+
+  HashRing(List<String> names, List<T> nodes) {
+    long[][] entries = new long[names.size() * POINTS_PER_NODE][];
+    for(int n = 0; n < names.size(); n++) {
+      long base = (long) names.get(n).hashCode() << 32;
+      for(int i = 0; i < POINTS_PER_NODE; i++) {
+        entries[n * POINTS_PER_NODE + i] = new long[]{ConcurrentLongMap.mix(base | i), n};
+      }
+    }
+    Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+    this.points = new long[entries.length];
+    this.owners = new Object[entries.length];
+    for(int i = 0; i < entries.length; i++) {
+      points[i] = entries[i][0];
+      owners[i] = nodes.get((int) entries[i][1]);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  T get(Object key) {
+    if(points.length == 0) {
+      throw new IllegalStateException("Ring is empty");
+    }
+    int slot = Arrays.binarySearch(points, ConcurrentLongMap.mix(key.hashCode()));
+    if(slot < 0) {
+      slot = -slot - 1;
+    }
+    return (T) owners[slot == points.length ? 0 : slot];
+  }
+}
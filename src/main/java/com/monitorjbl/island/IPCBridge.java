@@ -1,227 +1,635 @@
 package com.monitorjbl.island;
 
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.monitorjbl.island.domain.RPC;
 import com.monitorjbl.island.domain.RPCMessage;
 import com.monitorjbl.island.domain.RPCResponse;
-import net.openhft.chronicle.queue.ChronicleQueue;
-import net.openhft.chronicle.queue.ChronicleQueueBuilder;
-import net.openhft.chronicle.queue.ExcerptAppender;
-import net.openhft.chronicle.queue.ExcerptTailer;
+import com.monitorjbl.island.domain.RPCType;
+import net.openhft.chronicle.bytes.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 public class IPCBridge implements AutoCloseable {
   private static final Logger log = LoggerFactory.getLogger(IPCBridge.class);
+  private static final int CONTROL_CAPACITY = 1024;
+  private static final int LANE_CAPACITY = 8 * 1024;
 
-  private final ChronicleQueue txQueue;
-  private final ChronicleQueue rxQueue;
+  private final Transport transport;
   private final int defaultTimeout;
+  private final WaitStrategy waitStrategy;
+  private final int batchSize;
 
-  private final int pollDelay = 1;
-  private final ObjectMapper objectMapper = new ObjectMapper();
-  private final Map<String, IPCFuture> consumers = new ConcurrentHashMap<>();
-  private final Queue<RPC> queue = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLongMap<ResponseHandler> consumers = new ConcurrentLongMap<>();
+  private final AtomicLong nextId = new AtomicLong();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final SendQueue<RPC>[] lanes = lanes();
+  private UnaryOperator<Object> responseResolver = UnaryOperator.identity();
+  private Supplier<? extends RPCMessage> messages = RPCMessage::new;
+  private Codec codec = new TaggedCodec();
+  private Metrics metrics;
+  private CallLimiter limiter = new CallLimiter(Integer.MAX_VALUE);
+  private OverloadPolicy overloadPolicy = OverloadPolicy.BLOCK;
+  private long overloadTimeoutNanos;
 
   private Thread rxThread;
   private Thread txThread;
-  private boolean running = true;
-
-  IPCBridge(File txPath, File rxPath, Consumer<RPCMessage> receiveHandler) {
-    this.txQueue = ChronicleQueueBuilder.single(txPath.getAbsolutePath()).blockSize(5 * 1024 * 1024).build();
-    this.rxQueue = ChronicleQueueBuilder.single(rxPath.getAbsolutePath()).build();
+  private volatile boolean running = true;
+  private volatile RuntimeException failure;
+  private volatile long received;
+  private final BooleanSupplier sending = () -> running && failure == null;
 
+  IPCBridge(Transport transport, WaitStrategy waitStrategy, int batchSize, Consumer<RPCMessage> receiveHandler) {
+    this.transport = transport;
     this.defaultTimeout = 5000;
-    this.objectMapper.setSerializationInclusion(Include.NON_NULL);
+    this.waitStrategy = waitStrategy;
+    this.batchSize = batchSize;
     init(receiveHandler);
   }
 
+  /**
+   * Starts the sender and receiver threads. Kept out of the constructor so the owner can finish wiring up whatever
+   * the receive handler touches before the first message arrives.
+   */
+  void start() {
+    rxThread.start();
+    txThread.start();
+  }
+
+  /**
+   * Sets a function applied by the receiver thread to every successful response value before it is handed on,
+   * whether or not anything is still waiting for it. Must be called before {@link #start()}.
+   */
+  void resolveResponsesWith(UnaryOperator<Object> responseResolver) {
+    this.responseResolver = responseResolver;
+  }
+
+  /**
+   * Encodes response values with {@code codec}, which must match the other side's. Must be called before
+   * {@link #start()}.
+   */
+  void encodeValuesWith(Codec codec) {
+    this.codec = codec;
+  }
+
+  /**
+   * Reads incoming messages into ones taken from {@code messages} instead of new ones, for a receive handler that
+   * hands them back to be reused once it is done with them. Must be called before {@link #start()}.
+   */
+  void readMessagesInto(Supplier<? extends RPCMessage> messages) {
+    this.messages = messages;
+  }
+
+  /**
+   * Records every completed call in {@code metrics}. Must be called before {@link #start()}.
+   */
+  void recordMetricsIn(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Caps the number of invocations in flight at {@code maxInFlight}, applying {@code policy} to calls made while the
+   * cap is reached. Must be called before {@link #start()}.
+   */
+  void limitCalls(int maxInFlight, OverloadPolicy policy, long overloadTimeout) {
+    this.limiter = new CallLimiter(maxInFlight);
+    this.overloadPolicy = policy;
+    this.overloadTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(overloadTimeout);
+  }
+
+  /**
+   * Changes the cap on invocations in flight, for instance once the other side has advertised its capacity. Calls
+   * already in flight are not affected.
+   */
+  void setCallLimit(int maxInFlight) {
+    limiter.setLimit(maxInFlight);
+  }
+
+  int callLimit() {
+    return limiter.limit();
+  }
+
+  /**
+   * How long a synchronous caller waits for a response, in milliseconds.
+   */
+  int defaultTimeout() {
+    return defaultTimeout;
+  }
+
   private void init(Consumer<RPCMessage> receiveHandler) {
-    ExcerptAppender appender = txQueue.acquireAppender();
-    ExcerptTailer tailer = rxQueue.createTailer();
     rxThread = new Thread(() -> {
+      int idleCount = 0;
+      //every response is read into this one, which handlers are done with by the time they return
+      RPCResponse response = new RPCResponse();
       while(running) {
         try {
-          tailer.readDocument(wire -> {
-            RPC rpc = readRPC(wire.read(() -> "ipc-message").text());
-            if(rpc == null) {
-              //do nothing
-            } else if(rpc instanceof RPCResponse && consumers.containsKey(rpc.getId())) {
-              IPCFuture future = consumers.get(rpc.getId());
-              RPCResponse reply = (RPCResponse) rpc;
-              if(reply.isError()) {
-                future.error = true;
-                future.reply = reply.getResponse();
-              } else {
-                future.reply = future.responseFunction.apply(reply);
+          Bytes<?> bytes = transport.beginRead();
+          if(bytes == null) {
+            idleCount = waitStrategy.idle(idleCount);
+          } else {
+            idleCount = 0;
+            received++;
+            try {
+              long now = System.nanoTime();
+              int count = bytes.readInt();
+              for(int i = 0; i < count; i++) {
+                receive(WireFormat.read(bytes, codec, messages, response), now, receiveHandler);
               }
-              future.complete = true;
-              log.trace("Handled response for {}", reply.getId());
-            } else if(rpc instanceof RPCMessage) {
-              receiveHandler.accept((RPCMessage) rpc);
+            } finally {
+              transport.endRead();
             }
-          });
+          }
         } catch(Exception e) {
           log.error("Failed to receive", e);
         }
-        sleep(pollDelay);
       }
-      rxQueue.close();
     }, "receiver");
     txThread = new Thread(() -> {
+      int idleCount = 0;
+      long maxFrameSize = transport.maxFrameSize();
+      //what went into the current frame, so it can be failed if the frame is lost
+      RPC[] batch = new RPC[batchSize];
+      RPC carried = null;
       while(running) {
         try {
-          if(queue.size() > 0) {
-            RPC rpc = queue.poll();
-            if(rpc instanceof RPCMessage) {
-              log.trace("SEND {} ({})", ((RPCMessage) rpc).getType(), rpc.getId());
-              appender.writeDocument(w -> w.write("ipc-message").text(toJson(rpc)));
-            } else if(rpc instanceof RPCResponse) {
-              log.trace("REPLY {} ({})", rpc.getId(), ((RPCResponse) rpc).getResponse());
-              appender.writeDocument(w -> w.write("ipc-message").text(toJson(rpc)));
+          RPC rpc = carried != null ? carried : poll();
+          carried = null;
+          if(rpc == null) {
+            idleCount = waitStrategy.idleSender(idleCount);
+          } else {
+            idleCount = 0;
+            Bytes<?> bytes = transport.beginWrite();
+            int count = 0;
+            try {
+              long countPosition = bytes.writePosition();
+              long now = System.nanoTime();
+              bytes.writeInt(0);
+              do {
+                long position = bytes.writePosition();
+                if(write(rpc, now, bytes) == 0) {
+                  continue;
+                }
+                if(count > 0 && bytes.writePosition() > maxFrameSize) {
+                  //starts the next frame instead, so a batch of messages that each fit never overflows
+                  bytes.writePosition(position);
+                  carried = rpc;
+                  break;
+                }
+                batch[count++] = rpc;
+              } while(count < batchSize && (rpc = poll()) != null);
+              bytes.writeInt(countPosition, count);
+            } finally {
+              try {
+                //the other side may not be ready for it yet
+                while(!transport.endWrite() && running) {
+                  idleCount = waitStrategy.idle(idleCount);
+                }
+              } catch(RuntimeException e) {
+                lost(batch, count, e);
+                throw e;
+              } finally {
+                released(batch, count);
+                Arrays.fill(batch, 0, count, null);
+              }
+              idleCount = 0;
             }
           }
         } catch(Exception e) {
           log.error("Failed to send", e);
         }
-        sleep(pollDelay);
       }
-      txQueue.close();
     }, "sender");
+  }
 
-    rxThread.start();
-    txThread.start();
+  private void receive(RPC rpc, long receivedNanos, Consumer<RPCMessage> receiveHandler) {
+    if(rpc instanceof RPCResponse) {
+      RPCResponse response = (RPCResponse) rpc;
+      response.setReceivedNanos(receivedNanos);
+      if(!response.isError()) {
+        response.setResponse(responseResolver.apply(response.getResponse()));
+      }
+      ResponseHandler handler = response.isMore() ? consumers.get(rpc.getId()) : removeConsumer(rpc.getId());
+      if(handler != null) {
+        handler.onResponse(response);
+        if(log.isTraceEnabled()) {
+          log.trace("Handled response for {}", rpc.getId());
+        }
+      }
+    } else if(rpc instanceof RPCMessage) {
+      ((RPCMessage) rpc).setReceivedNanos(receivedNanos);
+      receiveHandler.accept((RPCMessage) rpc);
+    }
   }
 
-  <T> Future<T> send(RPCMessage message, Function<RPCResponse, T> responseFunction) {
-    IPCFuture<T> future = new IPCFuture<T>(message.getId(), responseFunction);
-    consumers.put(message.getId(), future);
-    queue.add(message);
-    return future;
+  /**
+   * Appends a single RPC to the current frame and returns the number of RPCs written. If it can't be encoded, the
+   * partial write is rolled back and the caller is told about the failure instead of the frame being corrupted.
+   */
+  private int write(RPC rpc, long sentNanos, Bytes<?> bytes) {
+    //boxing the ids for a disabled log statement would create garbage on every send
+    if(rpc instanceof RPCMessage) {
+      if(log.isTraceEnabled()) {
+        log.trace("SEND {} ({})", ((RPCMessage) rpc).getType(), rpc.getId());
+      }
+      ((RPCMessage) rpc).setSentNanos(sentNanos);
+    } else if(log.isTraceEnabled()) {
+      log.trace("REPLY {} ({})", rpc.getId(), ((RPCResponse) rpc).getResponse());
+    }
+
+    long position = bytes.writePosition();
+    try {
+      WireFormat.write(rpc, bytes, codec);
+      return 1;
+    } catch(Exception e) {
+      log.error("Failed to encode {}", rpc.getId(), e);
+      bytes.writePosition(position);
+      if(rpc instanceof RPCResponse) {
+        WireFormat.write(new RPCResponse(rpc.getId(), true, e.toString()), bytes, codec);
+        return 1;
+      }
+      ((RPCMessage) rpc).discard();
+      ResponseHandler handler = removeConsumer(rpc.getId());
+      if(handler != null) {
+        handler.onFailure(e);
+      }
+      return 0;
+    }
   }
 
-  void reply(RPCResponse response) {
-    queue.add(response);
+  /**
+   * Fails the calls in a frame that never reached the other side, which would otherwise wait for a response forever.
+   */
+  private void lost(RPC[] batch, int count, Exception cause) {
+    for(int i = 0; i < count; i++) {
+      RPC rpc = batch[i];
+      if(rpc instanceof RPCMessage) {
+        ((RPCMessage) rpc).discard();
+        ResponseHandler handler = removeConsumer(rpc.getId());
+        if(handler != null) {
+          handler.onFailure(cause);
+        }
+      } else {
+        log.error("Lost reply to {}", rpc.getId());
+      }
+    }
+  }
+
+  /**
+   * Hands back the replies in a frame that has been written or lost, since nothing reads them any more.
+   */
+  private void released(RPC[] batch, int count) {
+    for(int i = 0; i < count; i++) {
+      if(batch[i] instanceof RPCResponse) {
+        ((RPCResponse) batch[i]).release();
+      }
+    }
   }
 
-  private String toJson(Object obj) {
+  /**
+   * Sends a message and returns a future for its response. Invocations first take a call slot according to the
+   * overload policy; one that can't get a slot gets back a future failed with an {@link IslandOverloadedException}.
+   */
+  <T> CompletableFuture<T> send(RPCMessage message, Function<RPCResponse, T> responseFunction) {
+    boolean invocation = message.getType() == RPCType.METHOD_INVOCATION;
     try {
-      return objectMapper.writeValueAsString(obj);
-    } catch(JsonProcessingException e) {
-      throw new RuntimeException(e);
+      checkNotFailed();
+      if(invocation) {
+        acquireSlot();
+      }
+    } catch(IslandOverloadedException | IslandCrashedException e) {
+      message.discard();
+      CompletableFuture<T> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(e);
+      return rejected;
     }
+    message.setId(nextId.incrementAndGet());
+    message.setEnqueuedNanos(System.nanoTime());
+    IPCFuture<T> future = new IPCFuture<T>(message, responseFunction, invocation);
+    track(message.getId(), future);
+    enqueue(message);
+    return future;
   }
 
-  private RPC readRPC(String text) {
+  /**
+   * Sends a synchronous invocation and waits on the calling thread for its result. Unlike {@link #send} nothing is
+   * created per call: the message, its arguments and the handler waiting for the response all come from {@code call},
+   * which is abandoned if the wait times out or is interrupted.
+   */
+  Object call(SyncCall call) throws Throwable {
+    RPCMessage message = call.message();
+    admit(message);
+    long id = nextId.incrementAndGet();
+    message.setId(id);
+    message.setEnqueuedNanos(System.nanoTime());
+    call.prepare(metrics);
+    track(id, call);
+    enqueue(message);
     try {
-      if(text == null || !text.startsWith("{")) {
-        return null;
-      } else {
-        return objectMapper.readValue(text, RPC.class);
+      if(!call.await(TimeUnit.MILLISECONDS.toNanos(defaultTimeout))) {
+        call.abandon();
+        removeConsumer(id);
+        throw new RuntimeException(new TimeoutException());
       }
-    } catch(IOException e) {
-      throw new RuntimeException(e);
+    } catch(InterruptedException e) {
+      call.abandon();
+      removeConsumer(id);
+      throw e;
     }
+    return call.result();
+  }
+
+  /**
+   * Sends an invocation whose result comes back as a series of chunks. At most {@code window} chunks are sent ahead
+   * of what the returned iterator has consumed. The stream holds a call slot until it ends or is closed, and throws
+   * an {@link IslandOverloadedException} if it can't get one.
+   */
+  <T> RemoteIterator<T> stream(RPCMessage message, int window, int chunkSize) {
+    admit(message);
+    message.setId(nextId.incrementAndGet());
+    message.setCredits(window);
+    message.setChunkSize(chunkSize);
+    RemoteIterator<T> iterator = new RemoteIterator<>(this, message.getId(), defaultTimeout, message.getLane());
+    track(message.getId(), iterator);
+    enqueue(message);
+    return iterator;
   }
 
-  private static void sleep(long milli) {
+  /**
+   * Closes streams that have gone unread for so long that the caller has most likely dropped them, giving back their
+   * call slots.
+   */
+  void expireIdleStreams() {
+    long now = System.currentTimeMillis();
+    List<RemoteIterator<?>> idle = new ArrayList<>();
+    consumers.forEach(handler -> {
+      if(handler instanceof RemoteIterator && ((RemoteIterator<?>) handler).isIdle(now)) {
+        idle.add((RemoteIterator<?>) handler);
+      }
+    });
+    idle.forEach(RemoteIterator::expire);
+  }
+
+  /**
+   * Registers the handler for a call's response. If the bridge failed meanwhile, the handler is failed straight away,
+   * since nothing will ever answer it.
+   */
+  private void track(long id, ResponseHandler handler) {
+    consumers.put(id, handler);
+    inFlight.incrementAndGet();
+    RuntimeException cause = failure;
+    if(cause != null && removeConsumer(id) != null) {
+      handler.onFailure(cause);
+    }
+  }
+
+  /**
+   * Takes a call slot for an invocation, discarding it if the bridge has failed or no slot is to be had.
+   */
+  private void admit(RPCMessage message) {
     try {
-      Thread.sleep(milli);
+      checkNotFailed();
+      acquireSlot();
+    } catch(IslandOverloadedException | IslandCrashedException e) {
+      message.discard();
+      throw e;
+    }
+  }
+
+  private void checkNotFailed() {
+    RuntimeException cause = failure;
+    if(cause != null) {
+      throw cause;
+    }
+  }
+
+  /**
+   * Fails every call waiting for a response with {@code cause}, and makes every later call fail with it straight
+   * away. Used once the other side is known to be gone.
+   */
+  void fail(RuntimeException cause) {
+    failure = cause;
+    consumers.clear(handler -> {
+      inFlight.decrementAndGet();
+      if(handler.holdsSlot()) {
+        limiter.release();
+      }
+      handler.onFailure(cause);
+    });
+  }
+
+  /**
+   * The reason the bridge was failed, or null.
+   */
+  RuntimeException failure() {
+    return failure;
+  }
+
+  /**
+   * Number of frames received so far. It only ever goes up while the other side is alive and sending, so a count
+   * that stops moving while calls or pings are outstanding means it has hung.
+   */
+  long received() {
+    return received;
+  }
+
+  private void acquireSlot() {
+    boolean acquired;
+    try {
+      switch(overloadPolicy) {
+        case FAIL_FAST:
+          acquired = limiter.tryAcquire();
+          break;
+        case DEADLINE:
+          acquired = limiter.acquire(overloadTimeoutNanos);
+          break;
+        default:
+          acquired = limiter.acquire(-1);
+      }
     } catch(InterruptedException e) {
-      e.printStackTrace();
+      Thread.currentThread().interrupt();
+      throw new IslandOverloadedException("Interrupted while waiting for one of " + limiter.limit() + " call slots");
+    }
+    if(!acquired) {
+      if(metrics != null) {
+        metrics.rejected();
+      }
+      throw new IslandOverloadedException("All " + limiter.limit() + " call slots are in use");
+    }
+  }
+
+  /**
+   * Sends a message that has no response. The caller is responsible for the message id.
+   */
+  void post(RPCMessage message) {
+    enqueue(message);
+  }
+
+  /**
+   * Number of calls sent through this bridge that are still waiting for a response.
+   */
+  int inFlight() {
+    return inFlight.get();
+  }
+
+  ResponseHandler removeConsumer(long id) {
+    ResponseHandler handler = consumers.remove(id);
+    if(handler != null) {
+      inFlight.decrementAndGet();
+      if(handler.holdsSlot()) {
+        limiter.release();
+      }
+    }
+    return handler;
+  }
+
+  void reply(RPCResponse response) {
+    enqueue(response);
+  }
+
+  /**
+   * Takes the next RPC to send, draining control traffic first and then each priority class in turn.
+   */
+  private RPC poll() {
+    for(SendQueue<RPC> lane : lanes) {
+      RPC rpc = lane.poll();
+      if(rpc != null) {
+        return rpc;
+      }
     }
+    return null;
+  }
+
+  private void enqueue(RPC rpc) {
+    //nothing drains the queue of a failed or closed bridge
+    if(failure != null || !lanes[rpc.getLane()].offer(rpc, sending)) {
+      dropped(rpc);
+      return;
+    }
+    if(waitStrategy.signalsSender()) {
+      LockSupport.unpark(txThread);
+    }
+  }
+
+  /**
+   * Fails whatever was waiting on an RPC the sender will never get to.
+   */
+  private void dropped(RPC rpc) {
+    if(!(rpc instanceof RPCMessage)) {
+      log.debug("Dropped reply to {}", rpc.getId());
+      ((RPCResponse) rpc).release();
+      return;
+    }
+    ((RPCMessage) rpc).discard();
+    ResponseHandler handler = removeConsumer(rpc.getId());
+    if(handler != null) {
+      RuntimeException cause = failure;
+      handler.onFailure(cause != null ? cause : new IslandCrashedException("Bridge closed before the call was sent"));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static SendQueue<RPC>[] lanes() {
+    SendQueue<RPC>[] lanes = new SendQueue[PriorityClass.values().length + 1];
+    lanes[0] = new SendQueue<>(CONTROL_CAPACITY);
+    for(PriorityClass priority : PriorityClass.values()) {
+      lanes[priority.lane()] = new SendQueue<>(LANE_CAPACITY);
+    }
+    return lanes;
   }
 
   @Override
-  public void close() throws Exception {
+  public synchronized void close() throws Exception {
+    if(!running) {
+      //closed already, by the parent noticing its child crashed
+      return;
+    }
     this.running = false;
+    LockSupport.unpark(txThread);
     this.rxThread.join();
     this.txThread.join();
+    transport.close();
   }
 
-  private class IPCFuture<T> implements Future<T> {
-    private final String id;
+  /**
+   * Completed directly by the receiver thread when the matching response arrives, so dependent stages run on that
+   * thread. {@link #get()} waits for at most the bridge's default timeout.
+   */
+  private class IPCFuture<T> extends CompletableFuture<T> implements ResponseHandler {
+    private final RPCMessage message;
     private final Function<RPCResponse, T> responseFunction;
-    private boolean cancelled;
-    private boolean error;
-    private boolean complete;
-    private T reply;
+    private final boolean holdsSlot;
 
-    public IPCFuture(String id, Function<RPCResponse, T> responseFunction) {
-      this.id = id;
+    public IPCFuture(RPCMessage message, Function<RPCResponse, T> responseFunction, boolean holdsSlot) {
+      this.message = message;
       this.responseFunction = responseFunction;
+      this.holdsSlot = holdsSlot;
     }
 
     @Override
-    public boolean cancel(boolean mayInterruptIfRunning) {
-      consumers.remove(id);
-      cancelled = true;
-      return true;
+    public boolean holdsSlot() {
+      return holdsSlot;
+    }
+
+    @Override
+    public void onResponse(RPCResponse reply) {
+      if(metrics != null) {
+        metrics.record(message, reply);
+      }
+      if(reply.isError()) {
+        completeExceptionally(new RuntimeException(String.valueOf(reply.getResponse())));
+      } else {
+        try {
+          complete(responseFunction.apply(reply));
+        } catch(Exception e) {
+          completeExceptionally(e);
+        }
+      }
     }
 
     @Override
-    public boolean isCancelled() {
-      return cancelled;
+    public void onFailure(Throwable error) {
+      if(metrics != null) {
+        metrics.failed(message);
+      }
+      completeExceptionally(error);
     }
 
     @Override
-    public boolean isDone() {
-      return false;
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      removeConsumer(message.getId());
+      return super.cancel(mayInterruptIfRunning);
     }
 
     @Override
     public T get() throws InterruptedException, ExecutionException {
       try {
-        for(int i = 0; i < defaultTimeout && !cancelled && !complete; i++) {
-          sleep(1);
-        }
-
-        if(complete && !error) {
-          return reply;
-        } else if(complete && error) {
-          throw new RuntimeException(reply.toString());
-        } else if(cancelled) {
-          throw new CancellationException();
-        } else {
-          throw new RuntimeException(new TimeoutException());
-        }
-      } finally {
-        consumers.remove(id);
+        return get(defaultTimeout, TimeUnit.MILLISECONDS);
+      } catch(TimeoutException e) {
+        throw new RuntimeException(e);
       }
     }
 
     @Override
     public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
       try {
-        for(int i = 0; i < timeout && !cancelled && !complete; i++) {
-          sleep(1);
-        }
-
-        if(complete && !error) {
-          return reply;
-        } else if(complete && error) {
-          throw new RuntimeException(reply.toString());
-        } else {
-          throw new TimeoutException();
-        }
-      } finally {
-        consumers.remove(id);
+        return super.get(timeout, unit);
+      } catch(TimeoutException e) {
+        removeConsumer(message.getId());
+        throw e;
       }
     }
   }
@@ -1,109 +1,691 @@
 package com.monitorjbl.island;
 
 import com.monitorjbl.island.domain.RPCMessage;
+import com.monitorjbl.island.domain.RPCResponse;
+import com.monitorjbl.island.domain.RPCType;
+import net.openhft.chronicle.queue.RollCycles;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
-import java.lang.reflect.Proxy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
-import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.joining;
 
 public class Island implements AutoCloseable {
   private static final Logger log = LoggerFactory.getLogger(Island.class);
+  static final int STREAM_WINDOW = 4;
+  static final int STREAM_CHUNK_SIZE = 256;
+  static final String RAM_DISK = "/dev/shm";
 
   private final String classpath;
   private final String javaHome;
   private final String queueBasePath;
   private final String entryClass;
+  private final WaitStrategy waitStrategy;
+  private final int batchSize;
+  private final long sharedMemorySize;
+  private final int sharedMemoryThreshold;
+  private final List<String> jvmArgs;
+  private final long startupTimeout;
+  private final ExecutorType executorType;
+  private final int threads;
+  private final int maxInFlight;
+  private final OverloadPolicy overloadPolicy;
+  private final long overloadTimeout;
+  private final RollCycles rollCycle;
+  private final Class<? extends Codec> codecClass;
+  private final List<Class<?>> codecClasses;
+  private final Codec codec;
+  private final TransportType transport;
+  private final boolean voidMethodsOneWay;
+  private final OneWayErrorListener oneWayErrorListener;
+  private final boolean garbageFree;
+  private final boolean restartOnCrash;
+  private final long restartBackoff;
+  private final long maxRestartBackoff;
+  private final long livenessTimeout;
 
-  private IPCBridge bridge;
-  private Process process;
-  private boolean running;
+  private final Map<Class<?>, Map<Method, Integer>> registrations = new LinkedHashMap<>();
+  private volatile Method[] methodsById = new Method[0];
+  private volatile ResultCache[] caches = new ResultCache[0];
+  private volatile SingleFlight[] flights = new SingleFlight[0];
+  private final Metrics metrics = new Metrics(this::outstanding);
+  private final Object lifecycle = new Object();
+  private volatile IPCBridge bridge;
+  private volatile SharedMemory sharedMemory;
+  private volatile Process process;
+  private volatile boolean running;
+  private long launched;
+  private int crashes;
+  //only touched by the ping thread
+  private IPCBridge watched;
+  private long lastReceived;
+  private long lastProgress;
+  private int nextMethodId;
 
   public Island(String classpath, String javaHome, String queueBasePath, String entryClass) {
-    this.classpath = classpath;
-    this.javaHome = javaHome;
+    this(builder().classpath(classpath).javaHome(javaHome).entryClassName(entryClass), queueBasePath);
+  }
+
+  Island(IslandBuilder settings, String queueBasePath) {
+    this.classpath = settings.classpath;
+    this.javaHome = settings.javaHome;
     this.queueBasePath = queueBasePath;
-    this.entryClass = entryClass;
+    this.entryClass = settings.entryClass;
+    this.waitStrategy = settings.waitStrategy;
+    this.batchSize = settings.batchSize;
+    this.sharedMemorySize = settings.sharedMemorySize;
+    this.sharedMemoryThreshold = settings.sharedMemoryThreshold;
+    this.jvmArgs = new ArrayList<>(settings.jvmArgs);
+    this.startupTimeout = settings.startupTimeout;
+    this.executorType = settings.executorType;
+    this.threads = settings.threads;
+    this.maxInFlight = settings.maxInFlight;
+    this.overloadPolicy = settings.overloadPolicy;
+    this.overloadTimeout = settings.overloadTimeout;
+    this.rollCycle = settings.rollCycle;
+    this.codecClass = settings.codec;
+    this.codecClasses = new ArrayList<>(settings.codecClasses);
+    this.codec = createCodec(codecClass, codecClasses);
+    this.transport = settings.transport;
+    this.voidMethodsOneWay = settings.voidMethodsOneWay;
+    this.oneWayErrorListener = settings.oneWayErrorListener;
+    this.garbageFree = settings.garbageFree;
+    this.restartOnCrash = settings.restartOnCrash;
+    this.restartBackoff = settings.restartBackoff;
+    this.maxRestartBackoff = settings.maxRestartBackoff;
+    this.livenessTimeout = settings.livenessTimeout;
   }
 
   public void startup() {
+    synchronized(lifecycle) {
+      //set before the child starts, so its watcher fails the startup as soon as it exits
+      running = true;
+      Child child;
+      try {
+        child = spawn();
+      } catch(RuntimeException e) {
+        running = false;
+        throw e;
+      }
+      use(child);
+
+      //pings start straight away so a slow entry startup doesn't trip the child's watchdog
+      new Thread(() -> {
+        while(running) {
+          ping();
+          checkLiveness();
+          bridge.expireIdleStreams();
+          try {
+            Thread.sleep(5000);
+          } catch(InterruptedException e) {
+            e.printStackTrace();
+          }
+        }
+      }, "ping").start();
+
+      try {
+        awaitReady(child);
+      } catch(RuntimeException e) {
+        running = false;
+        throw e;
+      }
+      registerMBean();
+    }
+  }
+
+  /**
+   * Starts a child process along with the bridge and shared memory used to talk to it, and a thread that notices as
+   * soon as it exits.
+   */
+  private Child spawn() {
     try {
       File parentPath = new File(queueBasePath + "/parent");
       File childPath = new File(queueBasePath + "/child");
+      File sharedPath = new File(queueBasePath + "/" + SharedMemory.DIRECTORY);
 
       FileUtils.deleteDirectory(parentPath);
       FileUtils.deleteDirectory(childPath);
+      FileUtils.deleteDirectory(sharedPath);
       parentPath.mkdirs();
       childPath.mkdirs();
-      bridge = new IPCBridge(parentPath, childPath, msg -> { });
+      SharedMemory sharedMemory = new SharedMemory(new File(sharedPath, "parent"), new File(sharedPath, "child"),
+          sharedMemorySize, sharedMemoryThreshold);
+      IPCBridge bridge = new IPCBridge(transport.open(parentPath, childPath, rollCycle), waitStrategy, batchSize,
+          this::receive);
+      bridge.resolveResponsesWith(sharedMemory::importResult);
+      bridge.encodeValuesWith(codec);
+      bridge.recordMetricsIn(metrics);
+      bridge.limitCalls(maxInFlight, overloadPolicy, overloadTimeout);
+      bridge.start();
 
-      ProcessBuilder pb = new ProcessBuilder();
-      pb.command(
-          javaHome + "/bin/java", "-cp",
-          classpath, IslandChild.class.getCanonicalName(),
+      List<String> command = new ArrayList<>();
+      command.add(javaHome + "/bin/java");
+      command.addAll(jvmArgs);
+      command.addAll(Arrays.asList(
+          "-D" + IslandChild.WAIT_STRATEGY_PROPERTY + "=" + waitStrategy.name(),
+          "-D" + IslandChild.BATCH_SIZE_PROPERTY + "=" + batchSize,
+          "-D" + IslandChild.SHARED_MEMORY_SIZE_PROPERTY + "=" + sharedMemorySize,
+          "-D" + IslandChild.SHARED_MEMORY_THRESHOLD_PROPERTY + "=" + sharedMemoryThreshold,
+          "-D" + IslandChild.EXECUTOR_PROPERTY + "=" + executorType.name(),
+          "-D" + IslandChild.THREADS_PROPERTY + "=" + threads,
+          "-D" + IslandChild.ROLL_CYCLE_PROPERTY + "=" + rollCycle.name(),
+          "-D" + IslandChild.TRANSPORT_PROPERTY + "=" + transport.name(),
+          "-D" + IslandChild.CODEC_PROPERTY + "=" + codecClass.getName(),
+          "-D" + IslandChild.CODEC_CLASSES_PROPERTY + "="
+              + codecClasses.stream().map(Class::getName).collect(joining(",")),
+          "-cp", classpath, IslandChild.class.getCanonicalName(),
           queueBasePath,
-          entryClass);
+          entryClass));
+      ProcessBuilder pb = new ProcessBuilder(command);
       pb.inheritIO();
       pb.redirectErrorStream();
-      process = pb.start();
+      Child child = new Child(pb.start(), bridge, sharedMemory);
+      log.info("Child [PID:{}] starting up", pid(child.process));
 
-      log.info("Child [PID:{}] starting up", getProcessPID());
-      ping();
+      Thread watcher = new Thread(() -> watch(child), "island-watcher");
+      watcher.setDaemon(true);
+      watcher.start();
+      return child;
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 
-      running = true;
-      new Thread(() -> {
-        while(running) {
-          ping();
-          try {
-            Thread.sleep(5000);
-          } catch(InterruptedException e) {
-            e.printStackTrace();
-          }
+  /**
+   * Makes {@code child} the one calls are sent to.
+   */
+  private void use(Child child) {
+    sharedMemory = child.sharedMemory;
+    bridge = child.bridge;
+    process = child.process;
+    launched = System.currentTimeMillis();
+  }
+
+  /**
+   * Waits for the child to exit. If it wasn't asked to, every call waiting on it is failed straight away, and the
+   * child is restarted if the island is set up to.
+   */
+  private void watch(Child child) {
+    int exitCode;
+    try {
+      exitCode = child.process.waitFor();
+    } catch(InterruptedException e) {
+      return;
+    }
+    IslandCrashedException cause = new IslandCrashedException(
+        "Child [PID:" + pid(child.process) + "] exited with code " + exitCode);
+    if(!running) {
+      return;
+    }
+    child.bridge.fail(cause);
+
+    long delay;
+    synchronized(lifecycle) {
+      if(!running || child.process != process) {
+        return;
+      }
+      log.error(cause.getMessage());
+      //whatever the child's state was, cached results may not match the one that replaces it
+      invalidate(-1, Collections.emptyList());
+      closeBridge(child.bridge);
+      if(!restartOnCrash) {
+        return;
+      }
+      crashes = System.currentTimeMillis() - launched < maxRestartBackoff ? crashes + 1 : 0;
+      delay = Math.min(maxRestartBackoff, restartBackoff << Math.min(crashes, 20));
+    }
+
+    while(running) {
+      try {
+        Thread.sleep(delay);
+      } catch(InterruptedException e) {
+        return;
+      }
+      if(restart()) {
+        return;
+      }
+      delay = Math.min(maxRestartBackoff, delay * 2);
+    }
+  }
+
+  /**
+   * Replaces a crashed child with a new one and registers every proxied class with it under the same method ids, so
+   * existing proxies carry on with the new child. Returns false if the new child couldn't be started.
+   */
+  private boolean restart() {
+    synchronized(lifecycle) {
+      if(!running) {
+        return true;
+      }
+      try {
+        Child child = spawn();
+        awaitReady(child);
+        reregister(child);
+        SharedMemory retired = sharedMemory;
+        use(child);
+        //closed only now, so a call that was encoding into it when the old child died never touches unmapped memory
+        retired.close();
+        return true;
+      } catch(RuntimeException e) {
+        log.error("Could not restart child", e);
+        return false;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void reregister(Child child) {
+    Map<Class<?>, Map<Method, Integer>> current;
+    synchronized(this) {
+      current = new LinkedHashMap<>(registrations);
+    }
+    for(Map.Entry<Class<?>, Map<Method, Integer>> registration : current.entrySet()) {
+      if(registration.getValue().isEmpty()) {
+        continue;
+      }
+      Class<?> iface = registration.getKey();
+      int baseId = Collections.min(registration.getValue().values());
+      try {
+        List<String> signatures = (List<String>) child.bridge
+            .send(RPCMessage.register(iface.getName(), baseId), RPCResponse::getResponse)
+            .get(startupTimeout, TimeUnit.MILLISECONDS);
+        if(signatures.size() != registration.getValue().size()) {
+          throw new IllegalStateException("Child sees a different version of " + iface.getName() + ": " + signatures);
         }
-      }, "ping").start();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        abort(child);
+        throw new IllegalStateException("Interrupted while registering " + iface.getName(), e);
+      } catch(ExecutionException | TimeoutException | IllegalStateException e) {
+        abort(child);
+        throw new IllegalStateException("Could not register " + iface.getName() + " with the new child", e);
+      }
+    }
+  }
 
-    } catch(IOException e) {
-      throw new UncheckedIOException(e);
+  /**
+   * Kills the child if nothing at all has come back from it for longer than the liveness timeout, which pings every
+   * few seconds rule out for a healthy one. Its watcher then deals with it like any other crash.
+   */
+  private void checkLiveness() {
+    IPCBridge current = bridge;
+    Process child = process;
+    long received = current.received();
+    long now = System.currentTimeMillis();
+    if(current != watched || received != lastReceived || current.failure() != null) {
+      watched = current;
+      lastReceived = received;
+      lastProgress = now;
+    } else if(livenessTimeout > 0 && now - lastProgress > livenessTimeout && child.isAlive()) {
+      log.error("Child [PID:{}] has not responded in {}ms, killing it", pid(child), now - lastProgress);
+      child.destroyForcibly();
+    }
+  }
+
+  /**
+   * Handles messages the child sends on its own rather than in response to a call.
+   */
+  private void receive(RPCMessage message) {
+    if(message.getType() == RPCType.INVALIDATE) {
+      invalidate(message.getMethodId(), message.getMethodParameters());
+    } else if(message.getType() == RPCType.ONE_WAY_FAILED) {
+      Method[] methods = methodsById;
+      int id = message.getMethodId();
+      Method method = id < methods.length ? methods[id] : null;
+      try {
+        oneWayErrorListener.onError(method, new RuntimeException(message.getError()));
+      } catch(RuntimeException e) {
+        log.error("One-way error listener failed", e);
+      }
+    }
+  }
+
+  private void invalidate(int methodId, List<byte[]> args) {
+    ResultCache[] current = caches;
+    for(int i = 0; i < current.length; i++) {
+      if(current[i] != null && (methodId < 0 || methodId == i)) {
+        if(args.isEmpty()) {
+          current[i].invalidateAll();
+        } else {
+          current[i].invalidate(args);
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until the child has run its entry's {@code startup()} and lowers the call limit to the capacity it
+   * advertises. If that fails or takes longer than the startup timeout, the child is killed and the failure is thrown
+   * from here.
+   */
+  private void awaitReady(Child child) {
+    long started = System.nanoTime();
+    try {
+      Object capacity = child.bridge.send(RPCMessage.ready(), RPCResponse::getResponse)
+          .get(startupTimeout, TimeUnit.MILLISECONDS);
+      if(capacity instanceof Integer && (Integer) capacity < maxInFlight) {
+        child.bridge.setCallLimit(Math.max(1, (Integer) capacity));
+      }
+      log.info("Child [PID:{}] ready after {}ms, accepting {} calls at once", pid(child.process),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), child.bridge.callLimit());
+    } catch(ExecutionException e) {
+      abort(child);
+      throw new IllegalStateException("Child failed to start", e.getCause());
+    } catch(TimeoutException e) {
+      abort(child);
+      throw new IllegalStateException("Child was not ready within " + startupTimeout + "ms", e);
+    } catch(InterruptedException e) {
+      abort(child);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for child to start", e);
+    }
+  }
+
+  private void abort(Child child) {
+    child.process.destroyForcibly();
+    closeBridge(child.bridge);
+    child.sharedMemory.close();
+  }
+
+  private static void closeBridge(IPCBridge bridge) {
+    try {
+      bridge.close();
+    } catch(Exception e) {
+      log.error("Could not close bridge", e);
     }
   }
 
   public void shutdown() {
-    log.info("Child [PID:{}] shutting down", getProcessPID());
-    bridge.send(RPCMessage.shutdown(), identity());
-    running = false;
-    process.destroy();
-    process.exitValue();
+    synchronized(lifecycle) {
+      log.info("Child [PID:{}] shutting down", getProcessPID());
+      //stops the watcher from taking the exit for a crash
+      running = false;
+      bridge.send(RPCMessage.shutdown(), RPCResponse::getResponse);
+      process.destroy();
+      try {
+        process.waitFor();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      closeBridge(bridge);
+      sharedMemory.close();
+    }
+    unregisterMBean();
 
     try {
       File parentPath = new File(queueBasePath + "/parent");
       File childPath = new File(queueBasePath + "/child");
       FileUtils.deleteDirectory(parentPath);
       FileUtils.deleteDirectory(childPath);
+      FileUtils.deleteDirectory(new File(queueBasePath + "/" + SharedMemory.DIRECTORY));
     } catch(IOException e) {
       log.error("Could not clean up queue paths", e);
     }
   }
 
+  /**
+   * Pings the child. The reply carries the state of its executors and how much it has allocated, which is kept for
+   * {@link #stats()}.
+   */
   public void ping() {
     log.trace("Ping");
-    bridge.send(RPCMessage.ping(), identity());
+    bridge.send(RPCMessage.ping(), RPCResponse::getResponse).thenAccept(response -> {
+      if(response instanceof ChildStats) {
+        metrics.reportChild((ChildStats) response);
+      }
+    });
   }
 
   @SuppressWarnings("unchecked")
   public <E> E generateProxy(Class<E> iface) {
-    return (E) Proxy.newProxyInstance(
-        iface.getClassLoader(),
-        new Class<?>[]{iface},
-        new ProxyHandler(bridge));
+    return (E) ProxyGenerator.generate(new ProxyHandler(iface, register(iface), this::isOneWay, key -> this));
+  }
+
+  <T> CompletableFuture<T> send(RPCMessage message, Function<RPCResponse, T> responseFunction) {
+    return bridge.send(message, responseFunction);
+  }
+
+  /**
+   * Sends a synchronous invocation that reuses the calling thread's message, buffer and response handler.
+   */
+  Object call(SyncCall call) throws Throwable {
+    return bridge.call(call);
+  }
+
+  /**
+   * Whether plain synchronous calls should go through {@link #call(SyncCall)}.
+   */
+  boolean isGarbageFree() {
+    return garbageFree;
+  }
+
+  /**
+   * Queues an invocation that gets no response.
+   */
+  void post(RPCMessage message) {
+    IPCBridge current = bridge;
+    RuntimeException failure = current.failure();
+    if(failure != null) {
+      message.discard();
+      throw failure;
+    }
+    message.setOneWay(true);
+    current.post(message);
+  }
+
+  /**
+   * The result cache of a {@link Cached} method, or null.
+   */
+  ResultCache cache(int methodId) {
+    ResultCache[] current = caches;
+    return methodId < current.length ? current[methodId] : null;
+  }
+
+  /**
+   * The calls in flight of a {@link Coalesce} method, or null.
+   */
+  SingleFlight flight(int methodId) {
+    SingleFlight[] current = flights;
+    return methodId < current.length ? current[methodId] : null;
+  }
+
+  /**
+   * Whether calls to {@code method} are sent without waiting for a response.
+   */
+  boolean isOneWay(Method method) {
+    return method.getReturnType() == void.class && (voidMethodsOneWay || method.isAnnotationPresent(OneWay.class));
+  }
+
+  /**
+   * Round trips {@code count} pings so both sides have exercised the bridge before the island is handed out.
+   */
+  void warmup(int count) {
+    for(int i = 0; i < count; i++) {
+      try {
+        bridge.send(RPCMessage.ping(), RPCResponse::getResponse).get(startupTimeout, TimeUnit.MILLISECONDS);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch(ExecutionException | TimeoutException e) {
+        throw new IllegalStateException("Child stopped responding during warmup", e);
+      }
+    }
+  }
+
+  /**
+   * The shared memory large binary arguments for the current child are moved into.
+   */
+  SharedMemory sharedMemory() {
+    return sharedMemory;
+  }
+
+  Codec codec() {
+    return codec;
+  }
+
+  private static Codec createCodec(Class<? extends Codec> codecClass, List<Class<?>> classes) {
+    Codec codec;
+    try {
+      codec = codecClass.newInstance();
+    } catch(InstantiationException | IllegalAccessException e) {
+      throw new IllegalArgumentException("Could not create codec " + codecClass.getName(), e);
+    }
+    classes.forEach(codec::register);
+    return codec;
+  }
+
+  /**
+   * Sends an invocation whose Iterator or Stream result is pulled back from the child in chunks as it is consumed.
+   */
+  <T> RemoteIterator<T> stream(RPCMessage message) {
+    return bridge.stream(message, STREAM_WINDOW, STREAM_CHUNK_SIZE);
+  }
+
+  /**
+   * Number of calls sent to the child that are still waiting for a response.
+   */
+  int outstanding() {
+    IPCBridge bridge = this.bridge;
+    return bridge == null ? 0 : bridge.inFlight();
+  }
+
+  /**
+   * Snapshot of the calls made through this island's proxies since it was started: counts, errors, throughput and
+   * per-method latency histograms broken down by {@link Stage}. The same numbers are published over JMX.
+   */
+  public IslandStats stats() {
+    return metrics.snapshot();
+  }
+
+  private ObjectName objectName() throws MalformedObjectNameException {
+    return new ObjectName("com.monitorjbl.island:type=Island,name=" + ObjectName.quote(queueBasePath));
+  }
+
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = objectName();
+      if(server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(metrics, name);
+    } catch(JMException e) {
+      log.warn("Could not register island metrics with JMX", e);
+    }
+  }
+
+  private void unregisterMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = objectName();
+      if(server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch(JMException e) {
+      log.warn("Could not unregister island metrics from JMX", e);
+    }
+  }
+
+  /**
+   * Registers a class with the child the first time it is proxied. The child resolves each of its methods once and
+   * from then on invocations only carry the method id.
+   */
+  @SuppressWarnings("unchecked")
+  synchronized Map<Method, Integer> register(Class<?> iface) {
+    Map<Method, Integer> ids = registrations.get(iface);
+    if(ids != null) {
+      return ids;
+    }
+
+    List<Method> methods = RemoteMethods.of(iface);
+    for(Method method : methods) {
+      if(method.isAnnotationPresent(OneWay.class) && method.getReturnType() != void.class) {
+        throw new IllegalArgumentException("One-way method " + method + " must return void");
+      }
+      if(method.isAnnotationPresent(Cached.class)
+          && (method.getReturnType() == void.class || ProxyHandler.isStreaming(method))) {
+        throw new IllegalArgumentException("Cached method " + method + " must return a single value");
+      }
+      if(method.isAnnotationPresent(Coalesce.class)
+          && (method.getReturnType() == void.class || ProxyHandler.isStreaming(method))) {
+        throw new IllegalArgumentException("Coalesced method " + method + " must return a single value");
+      }
+    }
+    List<String> signatures;
+    try {
+      RPCMessage msg = RPCMessage.register(iface.getName(), nextMethodId);
+      signatures = (List<String>) send(msg, RPCResponse::getResponse).get();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while registering " + iface.getName(), e);
+    } catch(ExecutionException e) {
+      throw new IllegalStateException("Could not register " + iface.getName(), e.getCause());
+    }
+
+    if(signatures.size() != methods.size()) {
+      throw new IllegalStateException("Child sees a different version of " + iface.getName() + ": " + signatures);
+    }
+    ids = new HashMap<>();
+    for(int i = 0; i < methods.size(); i++) {
+      if(!RemoteMethods.signature(methods.get(i)).equals(signatures.get(i))) {
+        throw new IllegalStateException("Child sees a different version of " + iface.getName() + ": " + signatures);
+      }
+      ids.put(methods.get(i), nextMethodId + i);
+      metrics.register(nextMethodId + i, iface.getSimpleName() + "." + signatures.get(i));
+    }
+    Method[] byId = Arrays.copyOf(methodsById, nextMethodId + methods.size());
+    ResultCache[] cachesById = Arrays.copyOf(caches, nextMethodId + methods.size());
+    SingleFlight[] flightsById = Arrays.copyOf(flights, nextMethodId + methods.size());
+    for(int i = 0; i < methods.size(); i++) {
+      Method method = methods.get(i);
+      byId[nextMethodId + i] = method;
+      Cached cached = method.getAnnotation(Cached.class);
+      if(cached != null) {
+        cachesById[nextMethodId + i] = new ResultCache(iface.getSimpleName() + "." + signatures.get(i), cached);
+        metrics.registerCache(cachesById[nextMethodId + i]);
+      }
+      if(method.isAnnotationPresent(Coalesce.class)) {
+        int methodId = nextMethodId + i;
+        flightsById[methodId] = new SingleFlight(bridge.defaultTimeout(), () -> metrics.coalesced(methodId));
+      }
+    }
+    methodsById = byId;
+    caches = cachesById;
+    flights = flightsById;
+    nextMethodId += methods.size();
+    registrations.put(iface, ids);
+    return ids;
   }
 
   public long getProcessPID() {
+    return pid(process);
+  }
+
+  private static long pid(Process process) {
     long pid = -1;
     try {
       if(process.getClass().getName().equals("java.lang.UNIXProcess")) {
@@ -123,6 +705,21 @@ public class Island implements AutoCloseable {
     shutdown();
   }
 
+  /**
+   * A started child process and what the parent uses to talk to it.
+   */
+  private static class Child {
+    final Process process;
+    final IPCBridge bridge;
+    final SharedMemory sharedMemory;
+
+    Child(Process process, IPCBridge bridge, SharedMemory sharedMemory) {
+      this.process = process;
+      this.bridge = bridge;
+      this.sharedMemory = sharedMemory;
+    }
+  }
+
   public static IslandBuilder builder() {
     return new IslandBuilder();
   }
@@ -132,6 +729,32 @@ public class Island implements AutoCloseable {
     private String javaHome = System.getProperty("java.home");
     private String entryClass = DefaultIslandEntry.class.getCanonicalName();
     private String queueBasePath;
+    private WaitStrategy waitStrategy = WaitStrategy.BACKOFF;
+    private int batchSize = IslandChild.DEFAULT_BATCH_SIZE;
+    private RoutingStrategy routingStrategy = RoutingStrategy.LEAST_OUTSTANDING;
+    private long sharedMemorySize = IslandChild.DEFAULT_SHARED_MEMORY_SIZE;
+    private int sharedMemoryThreshold = IslandChild.DEFAULT_SHARED_MEMORY_THRESHOLD;
+    private List<String> jvmArgs = new ArrayList<>();
+    private long startupTimeout = 30000;
+    private int standby;
+    private ExecutorType executorType = ExecutorType.FIXED;
+    private int threads = IslandChild.DEFAULT_THREADS;
+    private int maxInFlight = 1024;
+    private OverloadPolicy overloadPolicy = OverloadPolicy.BLOCK;
+    private long overloadTimeout = 1000;
+    private RollCycles rollCycle = IslandChild.DEFAULT_ROLL_CYCLE;
+    private boolean ramDisk = true;
+    private TransportType transport = TransportType.CHRONICLE;
+    private Class<? extends Codec> codec = TaggedCodec.class;
+    private List<Class<?>> codecClasses = new ArrayList<>();
+    private boolean voidMethodsOneWay;
+    private OneWayErrorListener oneWayErrorListener = (method, error) ->
+        log.warn("One-way call to {} failed: {}", method, error.getMessage());
+    private boolean garbageFree;
+    private boolean restartOnCrash;
+    private long restartBackoff = 100;
+    private long maxRestartBackoff = 30000;
+    private long livenessTimeout = 30000;
 
     public IslandBuilder classpath(String classpath) {
       this.classpath = classpath;
@@ -148,18 +771,223 @@ public class Island implements AutoCloseable {
       return this;
     }
 
+    private IslandBuilder entryClassName(String entryClass) {
+      this.entryClass = entryClass;
+      return this;
+    }
+
     public IslandBuilder queueBasePath(String queueBasePath) {
       this.queueBasePath = queueBasePath;
       return this;
     }
 
-    public Island create() {
-      if(entryClass == null) { throw new IllegalStateException("entryClass cannot be null"); }
-      if(queueBasePath == null) {
-        queueBasePath = new File(System.getProperty("java.io.tmpdir")).getAbsolutePath();
-      }
+    public IslandBuilder waitStrategy(WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+      return this;
+    }
+
+    public IslandBuilder batchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    public IslandBuilder routingStrategy(RoutingStrategy routingStrategy) {
+      this.routingStrategy = routingStrategy;
+      return this;
+    }
+
+    /**
+     * Size of the memory-mapped region each side writes large binary values into. 0 disables it.
+     */
+    public IslandBuilder sharedMemorySize(long sharedMemorySize) {
+      this.sharedMemorySize = sharedMemorySize;
+      return this;
+    }
+
+    /**
+     * Byte arrays at least this long are passed through shared memory instead of being serialized onto the queue.
+     */
+    public IslandBuilder sharedMemoryThreshold(int sharedMemoryThreshold) {
+      this.sharedMemoryThreshold = sharedMemoryThreshold;
+      return this;
+    }
+
+    /**
+     * Extra options for the child JVM, such as heap size or JIT settings.
+     */
+    public IslandBuilder jvmArgs(String... jvmArgs) {
+      this.jvmArgs.addAll(Arrays.asList(jvmArgs));
+      return this;
+    }
+
+    /**
+     * How long {@code startup()} waits for the child's entry to finish starting, in milliseconds.
+     */
+    public IslandBuilder startupTimeout(long startupTimeout) {
+      this.startupTimeout = startupTimeout;
+      return this;
+    }
+
+    /**
+     * Number of warmed up spare children a pool keeps started, so growing it doesn't wait for a JVM to boot.
+     */
+    public IslandBuilder standby(int standby) {
+      this.standby = standby;
+      return this;
+    }
+
+    /**
+     * Kind of executor the child runs invocations on by default. Interfaces and methods can ask for their own with
+     * {@link ExecuteOn}.
+     */
+    public IslandBuilder executor(ExecutorType executorType) {
+      this.executorType = executorType;
+      return this;
+    }
+
+    /**
+     * Size of the child's default executor, and of {@link ExecuteOn} executors that don't give one.
+     */
+    public IslandBuilder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Most calls each child has in flight at once. Lowered further if the child's entry advertises a smaller
+     * {@link IslandEntry#capacity()}.
+     */
+    public IslandBuilder maxInFlight(int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+      return this;
+    }
+
+    /**
+     * What a call does when its child already has {@code maxInFlight} calls in flight.
+     */
+    public IslandBuilder overloadPolicy(OverloadPolicy overloadPolicy) {
+      this.overloadPolicy = overloadPolicy;
+      return this;
+    }
+
+    /**
+     * How long a call waits for a slot under {@link OverloadPolicy#DEADLINE}, in milliseconds.
+     */
+    public IslandBuilder overloadTimeout(long overloadTimeout) {
+      this.overloadTimeout = overloadTimeout;
+      return this;
+    }
+
+    /**
+     * How often the queues between parent and child start a new file. Each side deletes the files it has read past,
+     * so a shorter cycle keeps less on disk for busy islands. Defaults to {@code HOURLY}.
+     */
+    public IslandBuilder rollCycle(RollCycles rollCycle) {
+      this.rollCycle = rollCycle;
+      return this;
+    }
+
+    /**
+     * Whether to put the queues under {@code /dev/shm} when no queue base path is set and it is available. On by
+     * default; turned off, or when there is no such filesystem, they go under {@code java.io.tmpdir}.
+     */
+    public IslandBuilder ramDisk(boolean ramDisk) {
+      this.ramDisk = ramDisk;
+      return this;
+    }
+
+    /**
+     * How calls and responses travel between parent and child. Defaults to {@link TransportType#CHRONICLE}.
+     */
+    public IslandBuilder transport(TransportType transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * How arguments and results are encoded. The class needs a public no-arg constructor and must be on the child's
+     * classpath too. Defaults to {@link TaggedCodec}.
+     */
+    public IslandBuilder codec(Class<? extends Codec> codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    /**
+     * Registers classes that are passed to or returned from the child often, so the codec can encode them compactly.
+     * Both sides register them in the order given here.
+     */
+    public IslandBuilder registerClasses(Class<?>... classes) {
+      this.codecClasses.addAll(Arrays.asList(classes));
+      return this;
+    }
+
+    /**
+     * Treats every {@code void} method as if it were annotated with {@link OneWay}.
+     */
+    public IslandBuilder voidMethodsOneWay(boolean voidMethodsOneWay) {
+      this.voidMethodsOneWay = voidMethodsOneWay;
+      return this;
+    }
+
+    /**
+     * Called when a {@link OneWay} call fails in the child. By default the failure is logged.
+     */
+    public IslandBuilder oneWayErrorListener(OneWayErrorListener oneWayErrorListener) {
+      this.oneWayErrorListener = oneWayErrorListener;
+      return this;
+    }
+
+    /**
+     * Makes plain synchronous calls reuse a message, argument buffer and response handler kept by each calling
+     * thread instead of creating them per call, so in steady state they allocate nothing on that thread. Calls that
+     * are asynchronous, streamed, one-way, {@link Cached} or {@link Coalesce}d are unaffected.
+     */
+    public IslandBuilder garbageFree(boolean garbageFree) {
+      this.garbageFree = garbageFree;
+      return this;
+    }
+
+    /**
+     * Starts a new child when the current one exits without being shut down, with a backoff that doubles on each
+     * crash in quick succession. Registered classes are registered with the new child under the same method ids, so
+     * existing proxies keep working. Calls pending when the child died fail with {@link IslandCrashedException}
+     * either way.
+     */
+    public IslandBuilder restartOnCrash(boolean restartOnCrash) {
+      this.restartOnCrash = restartOnCrash;
+      return this;
+    }
+
+    /**
+     * How long to wait before the first restart after a crash, in milliseconds.
+     */
+    public IslandBuilder restartBackoff(long restartBackoff) {
+      this.restartBackoff = restartBackoff;
+      return this;
+    }
+
+    /**
+     * The longest to wait between restarts, in milliseconds. A child that stayed up for longer than this resets the
+     * backoff.
+     */
+    public IslandBuilder maxRestartBackoff(long maxRestartBackoff) {
+      this.maxRestartBackoff = maxRestartBackoff;
+      return this;
+    }
 
-      return new Island(classpath, javaHome, queueBasePath, entryClass);
+    /**
+     * How long, in milliseconds, the child may go without sending anything back, pings included, before it is
+     * taken to be hung and killed. 0 never kills it.
+     */
+    public IslandBuilder livenessTimeout(long livenessTimeout) {
+      this.livenessTimeout = livenessTimeout;
+      return this;
+    }
+
+    public Island create() {
+      validate();
+      return new Island(this, queueBasePath);
     }
 
     public Island createAndStartup() {
@@ -167,5 +995,115 @@ public class Island implements AutoCloseable {
       island.startup();
       return island;
     }
+
+    /**
+     * Creates a pool of {@code size} children. Each child gets its own queue directory under the queue base path.
+     */
+    public IslandPool createPool(int size) {
+      validate();
+      if(routingStrategy == null) { throw new IllegalStateException("routingStrategy cannot be null"); }
+      if(size < 1) { throw new IllegalStateException("size must be at least 1"); }
+
+      IslandBuilder settings = copy();
+      StandbyPool standbyPool = standby > 0
+          ? new StandbyPool(queueBasePath + "/standby", standby, path -> new Island(settings, path))
+          : null;
+      return new IslandPool(queueBasePath, size, routingStrategy, path -> {
+        if(standbyPool != null) {
+          return standbyPool.take();
+        }
+        Island island = new Island(settings, path);
+        island.startup();
+        return island;
+      }, standbyPool);
+    }
+
+    /**
+     * Starts {@code size} children in the background that {@link StandbyPool#take()} hands out already started and
+     * warmed up, replacing each one as it is taken.
+     */
+    public StandbyPool createStandby(int size) {
+      validate();
+      if(size < 1) { throw new IllegalStateException("size must be at least 1"); }
+
+      IslandBuilder settings = copy();
+      StandbyPool standbyPool = new StandbyPool(queueBasePath, size, path -> new Island(settings, path));
+      standbyPool.start();
+      return standbyPool;
+    }
+
+    public IslandPool createPoolAndStartup(int size) {
+      IslandPool pool = createPool(size);
+      pool.startup();
+      return pool;
+    }
+
+    private void validate() {
+      if(entryClass == null) { throw new IllegalStateException("entryClass cannot be null"); }
+      if(waitStrategy == null) { throw new IllegalStateException("waitStrategy cannot be null"); }
+      if(batchSize < 1) { throw new IllegalStateException("batchSize must be at least 1"); }
+      if(sharedMemorySize < 0) { throw new IllegalStateException("sharedMemorySize cannot be negative"); }
+      if(startupTimeout < 1) { throw new IllegalStateException("startupTimeout must be at least 1"); }
+      if(standby < 0) { throw new IllegalStateException("standby cannot be negative"); }
+      if(executorType == null) { throw new IllegalStateException("executorType cannot be null"); }
+      if(threads < 1) { throw new IllegalStateException("threads must be at least 1"); }
+      if(maxInFlight < 1) { throw new IllegalStateException("maxInFlight must be at least 1"); }
+      if(overloadPolicy == null) { throw new IllegalStateException("overloadPolicy cannot be null"); }
+      if(overloadTimeout < 0) { throw new IllegalStateException("overloadTimeout cannot be negative"); }
+      if(rollCycle == null) { throw new IllegalStateException("rollCycle cannot be null"); }
+      if(transport == null) { throw new IllegalStateException("transport cannot be null"); }
+      if(codec == null) { throw new IllegalStateException("codec cannot be null"); }
+      if(oneWayErrorListener == null) { throw new IllegalStateException("oneWayErrorListener cannot be null"); }
+      if(restartBackoff < 1) { throw new IllegalStateException("restartBackoff must be at least 1"); }
+      if(maxRestartBackoff < restartBackoff) {
+        throw new IllegalStateException("maxRestartBackoff cannot be less than restartBackoff");
+      }
+      if(livenessTimeout < 0) { throw new IllegalStateException("livenessTimeout cannot be negative"); }
+      if(queueBasePath == null) {
+        queueBasePath = defaultQueueBasePath();
+      }
+    }
+
+    private String defaultQueueBasePath() {
+      File ramDisk = new File(RAM_DISK);
+      if(this.ramDisk && ramDisk.isDirectory() && ramDisk.canWrite()) {
+        return new File(ramDisk, "island").getAbsolutePath();
+      }
+      return new File(System.getProperty("java.io.tmpdir")).getAbsolutePath();
+    }
+
+    private IslandBuilder copy() {
+      IslandBuilder copy = new IslandBuilder();
+      copy.classpath = classpath;
+      copy.javaHome = javaHome;
+      copy.entryClass = entryClass;
+      copy.queueBasePath = queueBasePath;
+      copy.waitStrategy = waitStrategy;
+      copy.batchSize = batchSize;
+      copy.routingStrategy = routingStrategy;
+      copy.sharedMemorySize = sharedMemorySize;
+      copy.sharedMemoryThreshold = sharedMemoryThreshold;
+      copy.jvmArgs = new ArrayList<>(jvmArgs);
+      copy.startupTimeout = startupTimeout;
+      copy.standby = standby;
+      copy.executorType = executorType;
+      copy.threads = threads;
+      copy.maxInFlight = maxInFlight;
+      copy.overloadPolicy = overloadPolicy;
+      copy.overloadTimeout = overloadTimeout;
+      copy.rollCycle = rollCycle;
+      copy.ramDisk = ramDisk;
+      copy.transport = transport;
+      copy.codec = codec;
+      copy.codecClasses = new ArrayList<>(codecClasses);
+      copy.voidMethodsOneWay = voidMethodsOneWay;
+      copy.oneWayErrorListener = oneWayErrorListener;
+      copy.garbageFree = garbageFree;
+      copy.restartOnCrash = restartOnCrash;
+      copy.restartBackoff = restartBackoff;
+      copy.maxRestartBackoff = maxRestartBackoff;
+      copy.livenessTimeout = livenessTimeout;
+      return copy;
+    }
   }
 }
@@ -2,45 +2,108 @@ package com.monitorjbl.island;
 
 import com.monitorjbl.island.domain.RPCMessage;
 import com.monitorjbl.island.domain.RPCResponse;
+import net.openhft.chronicle.queue.RollCycles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
 
 import static com.monitorjbl.island.domain.RPCType.METHOD_INVOCATION;
 import static com.monitorjbl.island.domain.RPCType.PING;
+import static com.monitorjbl.island.domain.RPCType.READY;
+import static com.monitorjbl.island.domain.RPCType.REGISTER;
 import static com.monitorjbl.island.domain.RPCType.SHUTDOWN;
+import static com.monitorjbl.island.domain.RPCType.STREAM_CREDIT;
 
 public class IslandChild {
+  static final String WAIT_STRATEGY_PROPERTY = "island.waitStrategy";
+  static final String BATCH_SIZE_PROPERTY = "island.batchSize";
+  static final int DEFAULT_BATCH_SIZE = 256;
+  static final String SHARED_MEMORY_SIZE_PROPERTY = "island.sharedMemorySize";
+  static final String SHARED_MEMORY_THRESHOLD_PROPERTY = "island.sharedMemoryThreshold";
+  static final long DEFAULT_SHARED_MEMORY_SIZE = 64 * 1024 * 1024;
+  static final int DEFAULT_SHARED_MEMORY_THRESHOLD = 64 * 1024;
+  static final String EXECUTOR_PROPERTY = "island.executor";
+  static final String THREADS_PROPERTY = "island.threads";
+  static final int DEFAULT_THREADS = 10;
+  static final String ROLL_CYCLE_PROPERTY = "island.rollCycle";
+  static final RollCycles DEFAULT_ROLL_CYCLE = RollCycles.HOURLY;
+  static final String TRANSPORT_PROPERTY = "island.transport";
+  static final String CODEC_PROPERTY = "island.codec";
+  static final String CODEC_CLASSES_PROPERTY = "island.codecClasses";
+  private static final int POOL_SIZE = 1024;
+
   private static final Logger log = LoggerFactory.getLogger(IslandChild.class);
   private final IPCBridge bridge;
   private final IslandEntry entry;
-  private final ExecutorService threadPool = Executors.newFixedThreadPool(10);
+  private final DispatchTable dispatchTable;
+  private final SharedMemory sharedMemory;
+  private final Codec codec;
+  private final ConcurrentLongMap<StreamProducer> streams = new ConcurrentLongMap<>();
+  private final SendQueue<Invocation> invocations = new SendQueue<>(POOL_SIZE);
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+  private final ChildExecutors executors;
   private final int timeout = 10000;
 
   private boolean running = true;
-  private long lastPing = System.currentTimeMillis();
+  private volatile long lastPing = System.currentTimeMillis();
 
   private IslandChild(String queueBasePath, String entryClass) throws Exception {
     File parentPath = new File(queueBasePath + "/parent");
     File childPath = new File(queueBasePath + "/child");
-    this.bridge = new IPCBridge(childPath, parentPath, msg -> dispatch(msg));
+    WaitStrategy waitStrategy = WaitStrategy.valueOf(System.getProperty(WAIT_STRATEGY_PROPERTY, WaitStrategy.BACKOFF.name()));
+    int batchSize = Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+    File sharedPath = new File(queueBasePath + "/" + SharedMemory.DIRECTORY);
+    this.sharedMemory = new SharedMemory(new File(sharedPath, "child"), new File(sharedPath, "parent"),
+        Long.getLong(SHARED_MEMORY_SIZE_PROPERTY, DEFAULT_SHARED_MEMORY_SIZE),
+        Integer.getInteger(SHARED_MEMORY_THRESHOLD_PROPERTY, DEFAULT_SHARED_MEMORY_THRESHOLD));
+    this.executors = new ChildExecutors(
+        ExecutorType.valueOf(System.getProperty(EXECUTOR_PROPERTY, ExecutorType.FIXED.name())),
+        Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS));
+    this.codec = initCodec(System.getProperty(CODEC_PROPERTY, TaggedCodec.class.getName()),
+        System.getProperty(CODEC_CLASSES_PROPERTY, ""));
     this.entry = initClass(entryClass);
+    this.dispatchTable = new DispatchTable(entry);
+    RollCycles rollCycle = RollCycles.valueOf(System.getProperty(ROLL_CYCLE_PROPERTY, DEFAULT_ROLL_CYCLE.name()));
+    TransportType transport = TransportType.valueOf(System.getProperty(TRANSPORT_PROPERTY, TransportType.CHRONICLE.name()));
+    this.bridge = new IPCBridge(transport.open(childPath, parentPath, rollCycle), waitStrategy, batchSize,
+        msg -> dispatch((Invocation) msg));
+    this.bridge.encodeValuesWith(codec);
+    this.bridge.readMessagesInto(this::invocation);
+    CacheControl.bind(dispatchTable, bridge, codec);
+    this.bridge.start();
     new Thread(() -> {
       while(running) {
         if(System.currentTimeMillis() - lastPing > timeout) {
           log.error("No pings seen in " + timeout + "ms, assuming parent is dead and becoming batman");
           shutdown();
         }
+        long now = System.currentTimeMillis();
+        streams.forEach(producer -> producer.expireIfIdle(now));
         sleep(1000);
       }
     }, "ping").start();
   }
 
   private void startup() {
-    entry.startup();
+    try {
+      entry.startup();
+      ready.complete(null);
+    } catch(RuntimeException e) {
+      log.error("Entry failed to start", e);
+      ready.completeExceptionally(e);
+      throw e;
+    }
   }
 
   private void listen() {
@@ -49,11 +112,38 @@ public class IslandChild {
     }
   }
 
-  private void dispatch(RPCMessage message) {
+  /**
+   * Takes a pooled invocation for the receiver thread to read the next message into, only creating one when all of
+   * them are still in use.
+   */
+  private Invocation invocation() {
+    Invocation invocation = invocations.poll();
+    return invocation != null ? invocation : new Invocation();
+  }
+
+  private void dispatch(Invocation message) {
     if(message != null) {
-      switch(message.getType().trim()) {
+      //anything from the parent shows it is alive, so a backlog of calls ahead of a ping can't time the child out
+      lastPing = System.currentTimeMillis();
+      switch(message.getType()) {
         case METHOD_INVOCATION:
-          threadPool.submit(() -> bridge.reply(new RPCResponse(message.getId(), false, methodInvocation(message))));
+          //goes back to the pool once the call has been answered
+          executors.execute(message.getMethodId(), message);
+          return;
+        case REGISTER:
+          register(message);
+          break;
+        case STREAM_CREDIT:
+          StreamProducer producer = streams.get(message.getId());
+          if(producer != null) {
+            producer.grant(message.getCredits());
+          }
+          break;
+        case READY:
+          //a successful reply advertises how many calls the entry is willing to have in flight
+          long id = message.getId();
+          ready.whenComplete((v, error) -> bridge.reply(
+              new RPCResponse(id, error != null, error == null ? entry.capacity() : error.toString())));
           break;
         case PING:
           bridge.reply(new RPCResponse(message.getId(), false, pong()));
@@ -64,17 +154,77 @@ public class IslandChild {
         default:
           bridge.reply(new RPCResponse(message.getId(), true, "Could not handle '" + message.getType() + "'"));
       }
+      message.recycle();
+    }
+  }
+
+  private void register(RPCMessage message) {
+    try {
+      Class<?> cls = Class.forName(message.getClassName());
+      List<String> signatures = dispatchTable.register(cls, message.getMethodId());
+      executors.register(cls, message.getMethodId());
+      log.debug("Registered {} as method ids {}-{}", cls.getName(), message.getMethodId(),
+          message.getMethodId() + signatures.size() - 1);
+      bridge.reply(new RPCResponse(message.getId(), false, signatures));
+    } catch(Exception e) {
+      log.error("Could not register {}", message.getClassName(), e);
+      bridge.reply(new RPCResponse(message.getId(), true, e.toString()));
     }
   }
 
-  private Object methodInvocation(RPCMessage message) {
-    return entry.accept(message);
+  private void stream(RPCMessage message, Object result, Runnable onDone) {
+    Iterator<?> iterator;
+    AutoCloseable resource = null;
+    if(result instanceof Stream) {
+      iterator = ((Stream<?>) result).iterator();
+      resource = (Stream<?>) result;
+    } else if(result instanceof Iterator) {
+      iterator = (Iterator<?>) result;
+    } else if(result instanceof Iterable) {
+      iterator = ((Iterable<?>) result).iterator();
+    } else if(result == null) {
+      iterator = Collections.emptyIterator();
+    } else {
+      RPCResponse response = new RPCResponse(message.getId(), true, "Cannot stream a " + result.getClass().getName());
+      response.setLane(message.getLane());
+      bridge.reply(response);
+      onDone.run();
+      return;
+    }
+
+    //the message is reused once the stream is done, so nothing the producer keeps may refer to it
+    long id = message.getId();
+    int methodId = message.getMethodId();
+    StreamProducer producer = new StreamProducer(bridge, id, iterator, resource,
+        message.getCredits(), message.getChunkSize(), message.getLane(),
+        task -> executors.execute(methodId, task), () -> {
+          streams.remove(id);
+          onDone.run();
+        });
+    streams.put(id, producer);
+    producer.start();
   }
 
+  /**
+   * Answers a ping with the state of the child's executors and how much its threads have allocated.
+   */
   private Object pong() {
     lastPing = System.currentTimeMillis();
     log.trace("Pong");
-    return "pong";
+    return new ChildStats(executors.stats(), allocatedBytes());
+  }
+
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if(!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    long total = 0;
+    for(long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      //threads that have exited since their ids were taken report -1
+      total += Math.max(0, bytes);
+    }
+    return total;
   }
 
   private Object shutdown() {
@@ -84,12 +234,136 @@ public class IslandChild {
     return null;
   }
 
+  /**
+   * A message read from the parent, which for an invocation is also the task that runs it. It keeps its encoded
+   * arguments, an argument array for each arity and its reply from one call to the next, and goes back to the pool
+   * once the call has been answered, so a steady stream of calls creates nothing on the child.
+   */
+  private class Invocation extends RPCMessage implements Runnable {
+    private final List<SharedRef> borrowed = new ArrayList<>(0);
+    private final RPCResponse response = new RPCResponse();
+    private final Runnable recycle = this::recycle;
+    private Object[][] arrays = new Object[1][];
+
+    @Override
+    public void run() {
+      long queueNanos = System.nanoTime() - getReceivedNanos();
+      long invoked = 0;
+      Object result;
+      try {
+        Object[] args = arguments();
+        invoked = System.nanoTime();
+        try {
+          result = dispatchTable.invoke(getMethodId(), args);
+        } finally {
+          Arrays.fill(args, null);
+        }
+      } catch(Throwable e) {
+        log.error("Invocation of method id {} failed", getMethodId(), e);
+        sharedMemory.release(borrowed);
+        if(isOneWay()) {
+          bridge.post(RPCMessage.oneWayFailed(getMethodId(), e.toString()));
+          recycle();
+        } else {
+          reply(true, e.toString(), queueNanos, invoked);
+        }
+        return;
+      }
+
+      if(isOneWay()) {
+        sharedMemory.release(borrowed);
+        recycle();
+      } else if(isStreaming()) {
+        //buffers passed in stay mapped until the stream ends
+        stream(this, result, () -> {
+          sharedMemory.release(borrowed);
+          recycle();
+        });
+      } else if(result instanceof CompletionStage) {
+        //buffers passed in stay mapped until the returned stage completes
+        long started = invoked;
+        ((CompletionStage<?>) result).whenComplete((value, error) -> {
+          sharedMemory.release(borrowed);
+          if(error == null) {
+            reply(false, value, queueNanos, started);
+          } else {
+            reply(true, error.toString(), queueNanos, started);
+          }
+        });
+      } else {
+        sharedMemory.release(borrowed);
+        reply(false, result, queueNanos, invoked);
+      }
+    }
+
+    /**
+     * Decodes the arguments in place from the encoded parameters.
+     */
+    private Object[] arguments() {
+      int count = getEncodedCount();
+      if(count >= arrays.length) {
+        arrays = Arrays.copyOf(arrays, count + 1);
+      }
+      Object[] args = arrays[count];
+      if(args == null) {
+        args = arrays[count] = new Object[count];
+      }
+      byte[] encoded = getEncodedParameters();
+      int position = 0;
+      for(int i = 0; i < count; i++) {
+        int length = EncodeBuffer.blobLength(encoded, position);
+        position += 4;
+        if(length < 0) {
+          args[i] = null;
+        } else {
+          args[i] = sharedMemory.importArgument(codec.decode(encoded, position, length), borrowed);
+          position += length;
+        }
+      }
+      return args;
+    }
+
+    /**
+     * Replies with the time the call waited for a pool thread and the time since the method was invoked, so the
+     * parent can break down where its latency went. The invocation must not be touched afterwards, since the sender
+     * hands it back to the pool once the reply is written.
+     */
+    private void reply(boolean error, Object result, long queueNanos, long invoked) {
+      response.setId(getId());
+      response.setError(error);
+      response.setResponse(error ? result : sharedMemory.export(result));
+      response.setQueueNanos(queueNanos);
+      response.setExecutionNanos(invoked == 0 ? 0 : System.nanoTime() - invoked);
+      response.setLane(getLane());
+      response.setOnRelease(recycle);
+      bridge.reply(response);
+    }
+
+    /**
+     * Hands the invocation back to be read into again, or leaves it to the garbage collector if the pool is full.
+     */
+    private void recycle() {
+      response.setResponse(null);
+      invocations.offer(this, () -> false);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private static IslandEntry initClass(String entryClass) throws ClassNotFoundException, IllegalAccessException, InstantiationException {
     Class<IslandEntry> cls = (Class<IslandEntry>) Class.forName(entryClass);
     return cls.newInstance();
   }
 
+  private static Codec initCodec(String codecClass, String classes) throws ReflectiveOperationException {
+    Codec codec = (Codec) Class.forName(codecClass).newInstance();
+    for(String cls : classes.split(",")) {
+      if(!cls.isEmpty()) {
+        codec.register(Class.forName(cls));
+      }
+    }
+    return codec;
+  }
+
   private static void sleep(long milli) {
     try {
       Thread.sleep(milli);
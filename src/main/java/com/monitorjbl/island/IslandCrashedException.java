@@ -0,0 +1,11 @@
+package com.monitorjbl.island;
+
+/**
+ * Thrown, or used to fail the returned future, when a call can't complete because its island's child process has
+ * died. Calls waiting for a response fail with it as soon as the death is noticed rather than when they time out.
+ */
+public class IslandCrashedException extends RuntimeException {
+  public IslandCrashedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,41 @@
+package com.monitorjbl.island;
+
+import java.util.Map;
+
+/**
+ * JMX view of an island's call metrics, registered as {@code com.monitorjbl.island:type=Island,name=<queue path>}.
+ */
+public interface IslandMXBean {
+  long getCalls();
+
+  long getErrors();
+
+  /**
+   * Calls turned away because the island had too many in flight, see {@link OverloadPolicy}.
+   */
+  long getRejected();
+
+  int getInFlight();
+
+  /**
+   * Completed calls per second over the last few seconds.
+   */
+  double getThroughput();
+
+  Map<String, MethodStats> getMethods();
+
+  /**
+   * The child's executors by name, as of its last ping.
+   */
+  Map<String, ExecutorStats> getExecutors();
+
+  /**
+   * Bytes the child's live threads have allocated since it started, as of its last ping, or -1 if it can't tell.
+   */
+  long getChildAllocatedBytes();
+
+  /**
+   * Result caches of {@link Cached} methods by method signature.
+   */
+  Map<String, CacheStats> getCaches();
+}
@@ -0,0 +1,11 @@
+package com.monitorjbl.island;
+
+/**
+ * Thrown, or used to fail the returned future, when a call can't be sent because its island has too many calls in
+ * flight. See {@link OverloadPolicy}.
+ */
+public class IslandOverloadedException extends RuntimeException {
+  public IslandOverloadedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,194 @@
+package com.monitorjbl.island;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * A set of child JVMs running the same entry class behind a single proxy. Each call is routed to one child according
+ * to the pool's {@link RoutingStrategy}, or by consistent hashing when the method has a {@link RoutingKey} parameter,
+ * and the pool can be grown or shrunk while calls are in flight.
+ */
+public class IslandPool implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(IslandPool.class);
+  private static final long DRAIN_TIMEOUT = 5000;
+
+  private final String queueBasePath;
+  private final int initialSize;
+  private final RoutingStrategy routingStrategy;
+  private final Function<String, Island> factory;
+  private final StandbyPool standby;
+  private final Map<Class<?>, Map<Method, Integer>> registrations = new LinkedHashMap<>();
+  private final AtomicInteger counter = new AtomicInteger();
+  private final List<String> names = new ArrayList<>();
+
+  private volatile Island[] islands = new Island[0];
+  private volatile HashRing<Island> ring = new HashRing<>(emptyList(), emptyList());
+  private int nextChild;
+
+  /**
+   * @param factory returns a started island for a queue path
+   * @param standby spare children to start new ones from, or null
+   */
+  IslandPool(String queueBasePath, int initialSize, RoutingStrategy routingStrategy, Function<String, Island> factory,
+             StandbyPool standby) {
+    this.queueBasePath = queueBasePath;
+    this.initialSize = initialSize;
+    this.routingStrategy = routingStrategy;
+    this.factory = factory;
+    this.standby = standby;
+  }
+
+  public void startup() {
+    resize(initialSize);
+    if(standby != null) {
+      standby.start();
+    }
+  }
+
+  /**
+   * Grows or shrinks the pool to {@code size} children. New children are started and have every proxied interface
+   * registered before they receive calls. Removed children stop receiving calls straight away and are shut down once
+   * their outstanding calls finish.
+   */
+  public synchronized void resize(int size) {
+    if(size < 1) {
+      throw new IllegalArgumentException("size must be at least 1");
+    }
+
+    Island[] current = islands;
+    if(size > current.length) {
+      List<Island> added = new ArrayList<>();
+      for(int i = current.length; i < size; i++) {
+        String name = "child-" + nextChild++;
+        Island island = factory.apply(queueBasePath + "/" + name);
+        added.add(island);
+        names.add(name);
+      }
+      for(Island island : added) {
+        registrations.forEach((iface, ids) -> {
+          if(!island.register(iface).equals(ids)) {
+            throw new IllegalStateException("Child assigned different method ids to " + iface.getName());
+          }
+        });
+      }
+      Island[] grown = Arrays.copyOf(current, size);
+      for(int i = 0; i < added.size(); i++) {
+        grown[current.length + i] = added.get(i);
+      }
+      islands = grown;
+      ring = new HashRing<>(names, Arrays.asList(grown));
+    } else if(size < current.length) {
+      Island[] shrunk = Arrays.copyOf(current, size);
+      names.subList(size, names.size()).clear();
+      islands = shrunk;
+      ring = new HashRing<>(names, Arrays.asList(shrunk));
+      for(int i = size; i < current.length; i++) {
+        drainAndShutdown(current[i]);
+      }
+    }
+    log.info("Pool resized to {} children", size);
+  }
+
+  public int size() {
+    return islands.length;
+  }
+
+  /**
+   * Stats of each running child, in the order they were started.
+   */
+  public List<IslandStats> stats() {
+    List<IslandStats> stats = new ArrayList<>();
+    for(Island island : islands) {
+      stats.add(island.stats());
+    }
+    return stats;
+  }
+
+  @SuppressWarnings("unchecked")
+  public synchronized <E> E generateProxy(Class<E> iface) {
+    Map<Method, Integer> ids = registrations.get(iface);
+    if(ids == null) {
+      for(Island island : islands) {
+        Map<Method, Integer> childIds = island.register(iface);
+        if(ids == null) {
+          ids = childIds;
+        } else if(!ids.equals(childIds)) {
+          throw new IllegalStateException("Children assigned different method ids to " + iface.getName());
+        }
+      }
+      registrations.put(iface, ids);
+    }
+
+    return (E) ProxyGenerator.generate(new ProxyHandler(iface, ids, islands[0]::isOneWay, this::route));
+  }
+
+  Island route(Object key) {
+    Island[] current = islands;
+    if(current.length == 0) {
+      throw new IllegalStateException("Pool has no running children");
+    }
+    if(key != null) {
+      return ring.get(key);
+    }
+
+    int start = (counter.getAndIncrement() & Integer.MAX_VALUE) % current.length;
+    if(routingStrategy == RoutingStrategy.ROUND_ROBIN) {
+      return current[start];
+    }
+
+    //start the scan at a rotating offset so ties don't all land on the first child
+    Island best = current[start];
+    int bestOutstanding = best.outstanding();
+    for(int i = 1; i < current.length && bestOutstanding > 0; i++) {
+      Island island = current[(start + i) % current.length];
+      int outstanding = island.outstanding();
+      if(outstanding < bestOutstanding) {
+        best = island;
+        bestOutstanding = outstanding;
+      }
+    }
+    return best;
+  }
+
+  private static void drainAndShutdown(Island island) {
+    long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+    while(island.outstanding() > 0 && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(10);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    island.shutdown();
+  }
+
+  public synchronized void shutdown() {
+    Island[] current = islands;
+    islands = new Island[0];
+    names.clear();
+    ring = new HashRing<>(names, emptyList());
+    for(Island island : current) {
+      island.shutdown();
+    }
+    if(standby != null) {
+      standby.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    shutdown();
+  }
+}
@@ -0,0 +1,98 @@
+package com.monitorjbl.island;
+
+import java.util.Map;
+
+/**
+ * Point-in-time snapshot of an island's call metrics, see {@link Island#stats()}.
+ */
+public class IslandStats implements IslandMXBean {
+  private final long calls;
+  private final long errors;
+  private final long rejected;
+  private final int inFlight;
+  private final double throughput;
+  private final Map<String, MethodStats> methods;
+  private final Map<String, ExecutorStats> executors;
+  private final long childAllocatedBytes;
+  private final Map<String, CacheStats> caches;
+
+  IslandStats(long calls, long errors, long rejected, int inFlight, double throughput,
+              Map<String, MethodStats> methods, Map<String, ExecutorStats> executors, long childAllocatedBytes,
+              Map<String, CacheStats> caches) {
+    this.calls = calls;
+    this.errors = errors;
+    this.rejected = rejected;
+    this.inFlight = inFlight;
+    this.throughput = throughput;
+    this.methods = methods;
+    this.executors = executors;
+    this.childAllocatedBytes = childAllocatedBytes;
+    this.caches = caches;
+  }
+
+  @Override
+  public long getCalls() {
+    return calls;
+  }
+
+  @Override
+  public long getErrors() {
+    return errors;
+  }
+
+  @Override
+  public long getRejected() {
+    return rejected;
+  }
+
+  @Override
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  @Override
+  public double getThroughput() {
+    return throughput;
+  }
+
+  /**
+   * Per-method metrics keyed by method signature.
+   */
+  @Override
+  public Map<String, MethodStats> getMethods() {
+    return methods;
+  }
+
+  public MethodStats method(String signature) {
+    return methods.get(signature);
+  }
+
+  @Override
+  public Map<String, ExecutorStats> getExecutors() {
+    return executors;
+  }
+
+  @Override
+  public long getChildAllocatedBytes() {
+    return childAllocatedBytes;
+  }
+
+  /**
+   * Result caches of {@link Cached} methods keyed by method signature.
+   */
+  @Override
+  public Map<String, CacheStats> getCaches() {
+    return caches;
+  }
+
+  public CacheStats cache(String signature) {
+    return caches.get(signature);
+  }
+
+  @Override
+  public String toString() {
+    return "calls=" + calls + ", errors=" + errors + ", rejected=" + rejected + ", inFlight=" + inFlight + ", throughput=" + throughput
+        + "/s, methods=" + methods.values() + ", executors=" + executors.values() + ", childAllocatedBytes=" + childAllocatedBytes
+        + ", caches=" + caches.values();
+  }
+}
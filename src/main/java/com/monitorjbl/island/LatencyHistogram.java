@@ -0,0 +1,76 @@
+package com.monitorjbl.island;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of nanosecond latencies. Each power of two is split into {@code 2^SUB_BUCKET_BITS} linear
+ * buckets, so reported percentiles are within 12.5% of the recorded values, and recording never allocates.
+ */
+class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long nanos) {
+    if(nanos < 0) {
+      nanos = 0;
+    }
+    counts.incrementAndGet(index(nanos));
+    count.incrementAndGet();
+    sum.addAndGet(nanos);
+    long current;
+    while(nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) { }
+  }
+
+  LatencySummary summary() {
+    long total = count.get();
+    if(total == 0) {
+      return new LatencySummary(0, 0, 0, 0, 0, 0);
+    }
+    return new LatencySummary(total, sum.get() / total, percentile(0.5), percentile(0.9), percentile(0.99), max.get());
+  }
+
+  private long percentile(double quantile) {
+    //buckets are read while others record, so the totals can be off by the few calls in flight
+    long total = 0;
+    for(int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    long target = Math.max(1, (long) Math.ceil(total * quantile));
+    long seen = 0;
+    for(int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if(seen >= target) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  static int index(long value) {
+    if(value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Largest value that lands in bucket {@code index}.
+   */
+  static long upperBound(int index) {
+    if(index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lower + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,58 @@
+package com.monitorjbl.island;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the calls made to one proxied method.
+ */
+public class MethodStats {
+  private final String method;
+  private final long calls;
+  private final long errors;
+  private final long coalesced;
+  private final Map<Stage, LatencySummary> latencies;
+
+  MethodStats(String method, long calls, long errors, long coalesced, Map<Stage, LatencySummary> latencies) {
+    this.method = method;
+    this.calls = calls;
+    this.errors = errors;
+    this.coalesced = coalesced;
+    this.latencies = latencies;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * Calls that have completed, including those that failed.
+   */
+  public long getCalls() {
+    return calls;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  /**
+   * Calls to a {@link Coalesce} method that shared another call's invocation instead of sending their own. They
+   * aren't included in {@link #getCalls()}.
+   */
+  public long getCoalesced() {
+    return coalesced;
+  }
+
+  public Map<Stage, LatencySummary> getLatencies() {
+    return latencies;
+  }
+
+  public LatencySummary latency(Stage stage) {
+    return latencies.get(stage);
+  }
+
+  @Override
+  public String toString() {
+    return method + " calls=" + calls + ", errors=" + errors + ", coalesced=" + coalesced + ", latencies=" + latencies;
+  }
+}
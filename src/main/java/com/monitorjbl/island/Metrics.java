@@ -0,0 +1,233 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCMessage;
+import com.monitorjbl.island.domain.RPCResponse;
+import com.monitorjbl.island.domain.RPCType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+/**
+ * Always-on call metrics for one island. Recording is done by the parent's receiver thread from timestamps the call
+ * picked up along the way, looks methods up by id in an array and only touches atomics, so it never allocates.
+ * Snapshots are only built when {@link #snapshot()} or JMX asks for them.
+ */
+class Metrics implements IslandMXBean {
+  private static final int WINDOW_SECONDS = 10;
+
+  private final IntSupplier inFlight;
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLongArray window = new AtomicLongArray(WINDOW_SECONDS);
+  private final AtomicLongArray windowSeconds = new AtomicLongArray(WINDOW_SECONDS);
+  private volatile MethodMetrics[] methods = new MethodMetrics[0];
+  private volatile Map<String, ExecutorStats> executors = Collections.emptyMap();
+  private volatile long childAllocatedBytes = -1;
+  private volatile List<ResultCache> caches = Collections.emptyList();
+
+  Metrics(IntSupplier inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  synchronized void register(int methodId, String name) {
+    MethodMetrics[] current = methods;
+    if(methodId >= current.length) {
+      current = Arrays.copyOf(current, methodId + 1);
+    }
+    current[methodId] = new MethodMetrics(name);
+    methods = current;
+  }
+
+  synchronized void registerCache(ResultCache cache) {
+    List<ResultCache> current = new ArrayList<>(caches);
+    current.add(cache);
+    caches = current;
+  }
+
+  void reportChild(ChildStats stats) {
+    Map<String, ExecutorStats> byName = new LinkedHashMap<>();
+    for(ExecutorStats executor : stats.getExecutors()) {
+      byName.put(executor.getName(), executor);
+    }
+    executors = Collections.unmodifiableMap(byName);
+    childAllocatedBytes = stats.getAllocatedBytes();
+  }
+
+  void record(RPCMessage message, RPCResponse response) {
+    MethodMetrics method = method(message);
+    if(method == null) {
+      return;
+    }
+    long childNanos = response.getQueueNanos() + response.getExecutionNanos();
+    method.record(Stage.SERIALIZE, message.getEnqueuedNanos() - message.getStartNanos());
+    method.record(Stage.SEND_QUEUE, message.getSentNanos() - message.getEnqueuedNanos());
+    method.record(Stage.TRANSPORT, response.getReceivedNanos() - message.getSentNanos() - childNanos);
+    method.record(Stage.CHILD_QUEUE, response.getQueueNanos());
+    method.record(Stage.EXECUTION, response.getExecutionNanos());
+    method.record(Stage.TOTAL, response.getReceivedNanos() - message.getStartNanos());
+    completed(method, response.isError());
+  }
+
+  void failed(RPCMessage message) {
+    MethodMetrics method = method(message);
+    if(method != null) {
+      completed(method, true);
+    }
+  }
+
+  /**
+   * Counts a call turned away because all call slots were in use.
+   */
+  void rejected() {
+    rejected.incrementAndGet();
+  }
+
+  /**
+   * Counts a call that shared the invocation of an identical call already in flight.
+   */
+  void coalesced(int methodId) {
+    MethodMetrics[] current = methods;
+    if(methodId < current.length && current[methodId] != null) {
+      current[methodId].coalesced.incrementAndGet();
+    }
+  }
+
+  private MethodMetrics method(RPCMessage message) {
+    MethodMetrics[] current = methods;
+    int id = message.getMethodId();
+    if(message.getType() != RPCType.METHOD_INVOCATION || message.getStartNanos() == 0 || id >= current.length) {
+      return null;
+    }
+    return current[id];
+  }
+
+  private void completed(MethodMetrics method, boolean error) {
+    method.calls.incrementAndGet();
+    calls.incrementAndGet();
+    if(error) {
+      method.errors.incrementAndGet();
+      errors.incrementAndGet();
+    }
+
+    long second = System.currentTimeMillis() / 1000;
+    int slot = (int) (second % WINDOW_SECONDS);
+    long slotSecond = windowSeconds.get(slot);
+    if(slotSecond != second && windowSeconds.compareAndSet(slot, slotSecond, second)) {
+      window.set(slot, 0);
+    }
+    window.incrementAndGet(slot);
+  }
+
+  IslandStats snapshot() {
+    Map<String, MethodStats> stats = new LinkedHashMap<>();
+    for(MethodMetrics method : methods) {
+      if(method != null) {
+        Map<Stage, LatencySummary> latencies = new EnumMap<>(Stage.class);
+        for(Stage stage : Stage.values()) {
+          latencies.put(stage, method.histograms[stage.ordinal()].summary());
+        }
+        stats.put(method.name, new MethodStats(method.name, method.calls.get(), method.errors.get(),
+            method.coalesced.get(), latencies));
+      }
+    }
+    return new IslandStats(calls.get(), errors.get(), rejected.get(), inFlight.getAsInt(), throughput(), stats,
+        executors, childAllocatedBytes, cacheStats());
+  }
+
+  private Map<String, CacheStats> cacheStats() {
+    Map<String, CacheStats> stats = new LinkedHashMap<>();
+    for(ResultCache cache : caches) {
+      CacheStats snapshot = cache.stats();
+      stats.put(snapshot.getMethod(), snapshot);
+    }
+    return stats;
+  }
+
+  /**
+   * Average over the last complete seconds of the window; the current second is still filling up.
+   */
+  private double throughput() {
+    long now = System.currentTimeMillis() / 1000;
+    long total = 0;
+    for(int i = 0; i < WINDOW_SECONDS; i++) {
+      long second = windowSeconds.get(i);
+      if(second < now && second >= now - (WINDOW_SECONDS - 1)) {
+        total += window.get(i);
+      }
+    }
+    return total / (double) (WINDOW_SECONDS - 1);
+  }
+
+  @Override
+  public long getCalls() {
+    return calls.get();
+  }
+
+  @Override
+  public long getErrors() {
+    return errors.get();
+  }
+
+  @Override
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  @Override
+  public int getInFlight() {
+    return inFlight.getAsInt();
+  }
+
+  @Override
+  public double getThroughput() {
+    return throughput();
+  }
+
+  @Override
+  public Map<String, MethodStats> getMethods() {
+    return snapshot().getMethods();
+  }
+
+  @Override
+  public Map<String, ExecutorStats> getExecutors() {
+    return executors;
+  }
+
+  @Override
+  public long getChildAllocatedBytes() {
+    return childAllocatedBytes;
+  }
+
+  @Override
+  public Map<String, CacheStats> getCaches() {
+    return cacheStats();
+  }
+
+  private static class MethodMetrics {
+    private final String name;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    MethodMetrics(String name) {
+      this.name = name;
+      for(int i = 0; i < histograms.length; i++) {
+        histograms[i] = new LatencyHistogram();
+      }
+    }
+
+    void record(Stage stage, long nanos) {
+      histograms[stage.ordinal()].record(nanos);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package com.monitorjbl.island;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code void} method as fire-and-forget. The proxy returns as soon as the call is queued, the child never
+ * answers it, and if it fails the error goes to the island's {@link OneWayErrorListener} instead of the caller. Calls
+ * made from one thread still reach the child in order, but may run concurrently there like any other.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OneWay {
+}
@@ -0,0 +1,12 @@
+package com.monitorjbl.island;
+
+import java.lang.reflect.Method;
+
+/**
+ * Told about {@link OneWay} calls that failed in the child. Called on the bridge's receiver thread, so it should hand
+ * off anything slow.
+ */
+@FunctionalInterface
+public interface OneWayErrorListener {
+  void onError(Method method, Throwable error);
+}
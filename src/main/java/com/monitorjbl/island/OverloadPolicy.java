@@ -0,0 +1,22 @@
+package com.monitorjbl.island;
+
+/**
+ * What a call does when its island already has the maximum number of calls in flight.
+ */
+public enum OverloadPolicy {
+  /**
+   * Waits for a response to free up a slot, however long that takes.
+   */
+  BLOCK,
+
+  /**
+   * Fails straight away with an {@link IslandOverloadedException}.
+   */
+  FAIL_FAST,
+
+  /**
+   * Waits up to the builder's {@code overloadTimeout} for a slot, then fails with an
+   * {@link IslandOverloadedException}.
+   */
+  DEADLINE
+}
@@ -0,0 +1,17 @@
+package com.monitorjbl.island;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sends the annotated interface's calls, or a single method's, in the given {@link PriorityClass} instead of
+ * {@link PriorityClass#NORMAL}. Their responses come back in the same class. A method annotation takes precedence over
+ * one on its interface. Calls in different classes can overtake each other; calls in the same class stay in order.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Priority {
+  PriorityClass value();
+}
@@ -0,0 +1,19 @@
+package com.monitorjbl.island;
+
+/**
+ * How urgently a call's messages are sent. Each class has its own send queue on both sides of the bridge, and a
+ * sender always drains the higher classes first, so latency-sensitive calls never wait behind bulk ones. Heartbeats,
+ * registrations and other control messages go ahead of all of them.
+ */
+public enum PriorityClass {
+  HIGH,
+  NORMAL,
+  BULK;
+
+  /**
+   * The send queue lane for this class. Lane 0 is reserved for control messages.
+   */
+  byte lane() {
+    return (byte) (ordinal() + 1);
+  }
+}
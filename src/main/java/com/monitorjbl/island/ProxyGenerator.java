@@ -0,0 +1,318 @@
+package com.monitorjbl.island;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IF_ACMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+/**
+ * Generates a proxy class for each {@link ProxyHandler}. Every proxied method gets a method of its own that passes
+ * its index and arguments straight to the handler, so there is no {@code Method} lookup, no argument array and no
+ * boxing of {@code int}, {@code long}, {@code double} or {@code boolean} arguments. Interfaces are implemented and
+ * public non-final classes are subclassed. A class needs a public or protected no-argument constructor, which runs
+ * when the proxy is created, so its field initialisers take effect; final methods of a class keep running locally.
+ * Non-public interfaces, which a generated class can't implement from another class loader, fall back to
+ * {@link Proxy}.
+ */
+class ProxyGenerator {
+  private static final String PACKAGE = "com/monitorjbl/island/generated/";
+  private static final String HANDLER_FIELD = "handler";
+  private static final String HANDLER = Type.getInternalName(ProxyHandler.class);
+  private static final String HANDLER_DESCRIPTOR = Type.getDescriptor(ProxyHandler.class);
+  private static final String CALL = Type.getInternalName(ProxyHandler.Call.class);
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  static Object generate(ProxyHandler handler) {
+    Class<?> cls = handler.proxiedClass();
+    if(!isPublic(cls)) {
+      if(cls.isInterface()) {
+        return Proxy.newProxyInstance(cls.getClassLoader(), new Class<?>[]{cls}, handler);
+      }
+      throw new IllegalArgumentException("Only public classes can be proxied: " + cls.getName());
+    }
+    if(Modifier.isFinal(cls.getModifiers())) {
+      throw new IllegalArgumentException("Final classes can't be proxied: " + cls.getName());
+    }
+    if(!cls.isInterface() && !hasAccessibleConstructor(cls)) {
+      throw new IllegalArgumentException(
+          "Classes need a public or protected no-argument constructor to be proxied: " + cls.getName());
+    }
+
+    String name = PACKAGE + cls.getSimpleName() + "$IslandProxy" + counter.incrementAndGet();
+    byte[] bytecode = write(name, cls, handler.methods());
+    Class<?> proxyClass = new ProxyClassLoader(cls.getClassLoader()).define(name.replace('/', '.'), bytecode);
+    try {
+      return proxyClass.getConstructor(ProxyHandler.class).newInstance(handler);
+    } catch(InvocationTargetException e) {
+      throw new IllegalStateException("Constructor of " + cls.getName() + " failed", e.getCause());
+    } catch(ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create a proxy for " + cls.getName(), e);
+    }
+  }
+
+  private static boolean hasAccessibleConstructor(Class<?> cls) {
+    try {
+      int modifiers = cls.getDeclaredConstructor().getModifiers();
+      return Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers);
+    } catch(NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static byte[] write(String name, Class<?> cls, Method[] methods) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+      @Override
+      protected String getCommonSuperClass(String type1, String type2) {
+        //only reached for the branch in equals, which doesn't merge any types of its own
+        return "java/lang/Object";
+      }
+    };
+    String superName = cls.isInterface() ? "java/lang/Object" : Type.getInternalName(cls);
+    String[] interfaces = cls.isInterface() ? new String[]{Type.getInternalName(cls)} : null;
+    cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, name, null, superName, interfaces);
+    cw.visitField(ACC_PRIVATE, HANDLER_FIELD, HANDLER_DESCRIPTOR, null, null).visitEnd();
+    writeConstructor(cw, name, superName);
+
+    //the same method can be inherited from more than one interface, but only gets implemented once
+    Set<String> written = new HashSet<>();
+    for(int i = 0; i < methods.length; i++) {
+      Method method = methods[i];
+      String signature = method.getName() + Type.getMethodDescriptor(method);
+      if(!Modifier.isFinal(method.getModifiers()) && written.add(signature)) {
+        writeMethod(cw, name, method, i);
+      }
+    }
+    writeObjectMethods(cw, name, cls, written);
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /**
+   * {@code Proxy(ProxyHandler handler) { this.handler = handler; super(); }}. The handler is set before the superclass
+   * constructor runs, as javac does for an inner class's outer instance, so methods it calls are proxied too.
+   */
+  private static void writeConstructor(ClassWriter cw, String name, String superName) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + HANDLER_DESCRIPTOR + ")V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitFieldInsn(PUTFIELD, name, HANDLER_FIELD, HANDLER_DESCRIPTOR);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * {@code return handler.complete(handler.begin(index, key).arg(a).arg(b)...)}, unboxing the result if needed.
+   */
+  private static void writeMethod(ClassWriter cw, String name, Method method, int index) {
+    String[] exceptions = Arrays.stream(method.getExceptionTypes()).map(Type::getInternalName).toArray(String[]::new);
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null,
+        exceptions.length == 0 ? null : exceptions);
+    mv.visitCode();
+
+    Class<?>[] params = method.getParameterTypes();
+    int[] slots = new int[params.length];
+    int slot = 1;
+    for(int i = 0; i < params.length; i++) {
+      slots[i] = slot;
+      slot += Type.getType(params[i]).getSize();
+    }
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, name, HANDLER_FIELD, HANDLER_DESCRIPTOR);
+    mv.visitLdcInsn(index);
+    int key = ProxyHandler.routingKeyIndex(method);
+    if(key < 0) {
+      mv.visitInsn(ACONST_NULL);
+    } else {
+      load(mv, params[key], slots[key]);
+      box(mv, params[key]);
+    }
+    mv.visitMethodInsn(INVOKEVIRTUAL, HANDLER, "begin", "(ILjava/lang/Object;)L" + CALL + ";", false);
+
+    for(int i = 0; i < params.length; i++) {
+      Class<?> param = params[i];
+      mv.visitInsn(DUP);
+      load(mv, param, slots[i]);
+      if(param == int.class || param == long.class || param == double.class || param == boolean.class) {
+        mv.visitMethodInsn(INVOKEVIRTUAL, CALL, "arg", "(" + Type.getDescriptor(param) + ")V", false);
+      } else {
+        box(mv, param);
+        mv.visitMethodInsn(INVOKEVIRTUAL, CALL, "arg", "(Ljava/lang/Object;)V", false);
+      }
+    }
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, name, HANDLER_FIELD, HANDLER_DESCRIPTOR);
+    mv.visitInsn(SWAP);
+    mv.visitMethodInsn(INVOKEVIRTUAL, HANDLER, "complete", "(L" + CALL + ";)Ljava/lang/Object;", false);
+
+    Class<?> returnType = method.getReturnType();
+    if(returnType == void.class) {
+      mv.visitInsn(POP);
+      mv.visitInsn(RETURN);
+    } else if(returnType.isPrimitive()) {
+      Type boxed = Type.getType(boxType(returnType));
+      mv.visitTypeInsn(CHECKCAST, boxed.getInternalName());
+      mv.visitMethodInsn(INVOKEVIRTUAL, boxed.getInternalName(), returnType.getName() + "Value",
+          "()" + Type.getDescriptor(returnType), false);
+      mv.visitInsn(Type.getType(returnType).getOpcode(IRETURN));
+    } else {
+      mv.visitTypeInsn(CHECKCAST, Type.getInternalName(returnType));
+      mv.visitInsn(ARETURN);
+    }
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * Identity based equals and hashCode, and a toString naming the proxied class, unless the class made them final or
+   * they are proxied like any other method.
+   */
+  private static void writeObjectMethods(ClassWriter cw, String name, Class<?> cls, Set<String> written) {
+    if(overridable(cls, written, "equals", "(Ljava/lang/Object;)Z", Object.class)) {
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z", null, null);
+      mv.visitCode();
+      Label different = new Label();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitJumpInsn(IF_ACMPNE, different);
+      mv.visitInsn(ICONST_1);
+      mv.visitInsn(IRETURN);
+      mv.visitLabel(different);
+      mv.visitInsn(ICONST_0);
+      mv.visitInsn(IRETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+    if(overridable(cls, written, "hashCode", "()I")) {
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "hashCode", "()I", null, null);
+      mv.visitCode();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "identityHashCode", "(Ljava/lang/Object;)I", false);
+      mv.visitInsn(IRETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+    if(overridable(cls, written, "toString", "()Ljava/lang/String;")) {
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "toString", "()Ljava/lang/String;", null, null);
+      mv.visitCode();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, name, HANDLER_FIELD, HANDLER_DESCRIPTOR);
+      mv.visitMethodInsn(INVOKEVIRTUAL, HANDLER, "toString", "()Ljava/lang/String;", false);
+      mv.visitInsn(ARETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+  }
+
+  private static void load(MethodVisitor mv, Class<?> type, int slot) {
+    mv.visitVarInsn(Type.getType(type).getOpcode(ILOAD), slot);
+  }
+
+  private static void box(MethodVisitor mv, Class<?> type) {
+    if(type.isPrimitive()) {
+      String boxed = Type.getInternalName(boxType(type));
+      mv.visitMethodInsn(INVOKESTATIC, boxed, "valueOf", "(" + Type.getDescriptor(type) + ")L" + boxed + ";", false);
+    }
+  }
+
+  private static Class<?> boxType(Class<?> type) {
+    if(type == int.class) {
+      return Integer.class;
+    } else if(type == long.class) {
+      return Long.class;
+    } else if(type == double.class) {
+      return Double.class;
+    } else if(type == boolean.class) {
+      return Boolean.class;
+    } else if(type == float.class) {
+      return Float.class;
+    } else if(type == short.class) {
+      return Short.class;
+    } else if(type == byte.class) {
+      return Byte.class;
+    }
+    return Character.class;
+  }
+
+  private static boolean overridable(Class<?> cls, Set<String> written, String method, String descriptor,
+                                     Class<?>... params) {
+    if(written.contains(method + descriptor)) {
+      return false;
+    }
+    try {
+      return !Modifier.isFinal(cls.getMethod(method, params).getModifiers());
+    } catch(NoSuchMethodException e) {
+      return true;
+    }
+  }
+
+  /**
+   * A public class is only usable from another class loader if every class it is nested in is public too.
+   */
+  private static boolean isPublic(Class<?> cls) {
+    for(Class<?> c = cls; c != null; c = c.getEnclosingClass()) {
+      if(!Modifier.isPublic(c.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Defines a proxy class next to the classes of the proxied one. Island's own classes are looked up through the
+   * loader that loaded them when the proxied class's loader can't see them.
+   */
+  private static class ProxyClassLoader extends ClassLoader {
+    ProxyClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      return ProxyGenerator.class.getClassLoader().loadClass(name);
+    }
+
+    Class<?> define(String name, byte[] bytecode) {
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+}
@@ -3,31 +3,396 @@ package com.monitorjbl.island;
 import com.monitorjbl.island.domain.RPCMessage;
 import com.monitorjbl.island.domain.RPCResponse;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-
-import static java.util.stream.Collectors.toList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Sends the calls made on a proxy to an island. Proxies generated by {@link ProxyGenerator} have each method's index
+ * baked in and call {@link #begin}, then {@link Call#arg} once per parameter, then {@link #complete}, so primitive
+ * arguments are encoded without being boxed into an array first. Proxies made with {@link java.lang.reflect.Proxy}
+ * go through {@link #invoke} instead.
+ * <p>
+ * On a {@link Island.IslandBuilder#garbageFree garbage-free} island, plain synchronous calls reuse a {@link Call} and
+ * {@link SyncCall} kept by the calling thread, so making them allocates nothing.
+ */
 public class ProxyHandler implements InvocationHandler {
+  private static final ThreadLocal<Call> POOLED = ThreadLocal.withInitial(Call::new);
+
+  private final Class<?> iface;
+  private final Method[] methods;
+  private final int[] methodIds;
+  private final int[] routingKeys;
+  private final boolean[] oneWay;
+  private final boolean[] synchronous;
+  private final byte[] lanes;
+  private final Map<Method, Integer> indexes = new HashMap<>();
+  private final Router router;
+
+  /**
+   * @param oneWay picks out the methods whose calls are sent without waiting for a response
+   */
+  ProxyHandler(Class<?> iface, Map<Method, Integer> methodIds, Predicate<Method> oneWay, Router router) {
+    this.iface = iface;
+    this.router = router;
+    List<Method> methods = new ArrayList<>(methodIds.keySet());
+    methods.sort(Comparator.comparing(RemoteMethods::signature));
+    this.methods = methods.toArray(new Method[0]);
+    this.methodIds = new int[methods.size()];
+    this.routingKeys = new int[methods.size()];
+    this.oneWay = new boolean[methods.size()];
+    this.synchronous = new boolean[methods.size()];
+    this.lanes = new byte[methods.size()];
+    for(int i = 0; i < methods.size(); i++) {
+      Method method = methods.get(i);
+      this.methodIds[i] = methodIds.get(method);
+      this.routingKeys[i] = routingKeyIndex(method);
+      this.oneWay[i] = oneWay.test(method);
+      this.synchronous[i] = !this.oneWay[i] && !isAsync(method) && !isStreaming(method);
+      this.lanes[i] = priority(iface, method).lane();
+      indexes.put(method, i);
+    }
+  }
+
+  /**
+   * The proxied methods, in the order of the indexes passed to {@link #begin}.
+   */
+  Method[] methods() {
+    return methods.clone();
+  }
+
+  Class<?> proxiedClass() {
+    return iface;
+  }
+
+  /**
+   * Starts a call to the method at {@code index}. Called by generated proxies.
+   *
+   * @param routingKey the value of the method's {@link RoutingKey} parameter, or null
+   */
+  public Call begin(int index, Object routingKey) {
+    long start = System.nanoTime();
+    Island island = router.route(routingKey);
+    int methodId = methodIds[index];
+    ResultCache cache = island.cache(methodId);
+    SingleFlight flight = island.flight(methodId);
+    if(island.isGarbageFree() && synchronous[index] && cache == null && flight == null) {
+      Call call = POOLED.get();
+      //an argument's own serialization may have called another proxy while the thread's call was being built
+      if(!call.inUse) {
+        call.reuse(index, island, methodId, lanes[index], start);
+        return call;
+      }
+    }
+    RPCMessage msg = RPCMessage.invocation();
+    msg.setStartNanos(start);
+    msg.setMethodId(methodId);
+    msg.setLane(lanes[index]);
+    return new Call(index, island, msg, cache, flight);
+  }
+
+  /**
+   * Sends a call once all of its arguments have been added, and returns its result. Called by generated proxies.
+   */
+  public Object complete(Call call) throws Throwable {
+    if(call.sync != null) {
+      try {
+        return call.island.call(call.sync);
+      } finally {
+        call.inUse = false;
+      }
+    }
+
+    Method method = methods[call.index];
+    Island island = call.island;
+    RPCMessage msg = call.message;
+    EncodeBuffer args = call.args;
+    if(call.cache != null || call.flight != null) {
+      msg.setMethodParameters(args.blobList());
+    } else {
+      msg.setEncodedParameters(args.array(), args.size(), args.blobs());
+    }
+
+    if(oneWay[call.index]) {
+      island.post(msg);
+      return null;
+    }
 
-  private final IPCBridge bridge;
+    if(isStreaming(method)) {
+      RemoteIterator<Object> iterator = island.stream(msg);
+      if(method.getReturnType() == Iterator.class) {
+        return iterator;
+      }
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+          .onClose(iterator::close);
+    }
+
+    if(call.cache != null) {
+      return invokeCached(method, island, msg, call.cache, call.flight);
+    }
+
+    CompletableFuture<Object> future = send(island, msg, call.flight);
+    if(isAsync(method)) {
+      return future;
+    }
 
-  public ProxyHandler(IPCBridge bridge) {
-    this.bridge = bridge;
+    try {
+      return future.get();
+    } catch(ExecutionException e) {
+      throw e.getCause();
+    }
   }
 
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-    RPCMessage msg = RPCMessage.invocation();
-    msg.setClassName(method.getDeclaringClass().getCanonicalName());
-    msg.setMethodName(method.getName());
+    Integer index = indexes.get(method);
+    if(index == null) {
+      return invokeLocally(proxy, method, args);
+    }
+
+    int keyIndex = routingKeys[index];
+    Call call = begin(index, keyIndex < 0 ? null : args[keyIndex]);
     if(args != null) {
-      msg.setMethodParameters(Arrays.stream(args)
-          .map(Serializer::serializeObject)
-          .collect(toList()));
+      for(Object arg : args) {
+        call.arg(arg);
+      }
+    }
+    return complete(call);
+  }
+
+  private Object invokeCached(Method method, Island island, RPCMessage msg, ResultCache cache, SingleFlight flight)
+      throws Throwable {
+    List<byte[]> key = msg.getMethodParameters();
+    Object cached = cache.get(key);
+    if(cached != ResultCache.MISS) {
+      return isAsync(method) ? CompletableFuture.completedFuture(cached) : cached;
+    }
+
+    long generation = cache.generation();
+    CompletableFuture<Object> future = send(island, msg, flight);
+    if(isAsync(method)) {
+      future.thenAccept(value -> cache.put(key, value, generation));
+      return future;
+    }
+
+    try {
+      Object value = future.get();
+      cache.put(key, value, generation);
+      return value;
+    } catch(ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static CompletableFuture<Object> send(Island island, RPCMessage msg, SingleFlight flight) {
+    if(flight == null) {
+      return island.send(msg, RPCResponse::getResponse);
     }
-    return bridge.send(msg, RPCResponse::getResponse).get();
+    return flight.call(msg.getMethodParameters(), () -> island.send(msg, RPCResponse::getResponse));
   }
 
+  private Object invokeLocally(Object proxy, Method method, Object[] args) {
+    switch(method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return toString();
+      default:
+        throw new UnsupportedOperationException("Method " + method + " is not registered with the island");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Island proxy for " + iface.getName();
+  }
+
+  static boolean isAsync(Method method) {
+    Class<?> type = method.getReturnType();
+    return type != Object.class && type.isAssignableFrom(CompletableFuture.class);
+  }
+
+  /**
+   * Methods returning an Iterator or a Stream have their results streamed back in chunks instead of being collected
+   * into a single response.
+   */
+  static boolean isStreaming(Method method) {
+    Class<?> type = method.getReturnType();
+    return type == Iterator.class || type == Stream.class;
+  }
+
+  /**
+   * The method's {@link Priority}, or else its interface's.
+   */
+  static PriorityClass priority(Class<?> iface, Method method) {
+    Priority priority = method.getAnnotation(Priority.class);
+    if(priority == null) {
+      priority = iface.getAnnotation(Priority.class);
+    }
+    return priority == null ? PriorityClass.NORMAL : priority.value();
+  }
+
+  /**
+   * Position of the method's {@link RoutingKey} parameter, or -1 if it has none.
+   */
+  static int routingKeyIndex(Method method) {
+    Annotation[][] annotations = method.getParameterAnnotations();
+    for(int i = 0; i < annotations.length; i++) {
+      for(Annotation annotation : annotations[i]) {
+        if(annotation instanceof RoutingKey) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * A call whose arguments are being encoded. Primitive arguments are encoded straight from the primitive value, and
+   * every argument goes into a single buffer laid out the way the arguments are sent.
+   */
+  public static final class Call {
+    private int index;
+    private Island island;
+    private RPCMessage message;
+    private ResultCache cache;
+    private SingleFlight flight;
+    private EncodeBuffer args;
+    private SyncCall sync;
+    private SharedMemory memory;
+    private List<SharedRef> exported;
+    private boolean inUse;
+
+    private Call(int index, Island island, RPCMessage message, ResultCache cache, SingleFlight flight) {
+      this.index = index;
+      this.island = island;
+      this.message = message;
+      this.cache = cache;
+      this.flight = flight;
+      this.args = new EncodeBuffer();
+    }
+
+    /**
+     * A thread's pooled call, set up by {@link #reuse} before each use.
+     */
+    private Call() {
+    }
+
+    private void reuse(int index, Island island, int methodId, byte lane, long start) {
+      if(sync == null || sync.isAbandoned()) {
+        sync = new SyncCall();
+      }
+      sync.reset(methodId, lane, start);
+      this.index = index;
+      this.island = island;
+      this.message = sync.message();
+      this.args = sync.arguments();
+      this.memory = null;
+      this.exported = null;
+      this.inUse = true;
+    }
+
+    public void arg(int value) {
+      int start = args.beginBlob();
+      try {
+        island.codec().encode(value, args);
+      } catch(IOException | RuntimeException e) {
+        throw failed(e);
+      }
+      args.endBlob(start);
+    }
+
+    public void arg(long value) {
+      int start = args.beginBlob();
+      try {
+        island.codec().encode(value, args);
+      } catch(IOException | RuntimeException e) {
+        throw failed(e);
+      }
+      args.endBlob(start);
+    }
+
+    public void arg(double value) {
+      int start = args.beginBlob();
+      try {
+        island.codec().encode(value, args);
+      } catch(IOException | RuntimeException e) {
+        throw failed(e);
+      }
+      args.endBlob(start);
+    }
+
+    public void arg(boolean value) {
+      int start = args.beginBlob();
+      try {
+        island.codec().encode(value, args);
+      } catch(IOException | RuntimeException e) {
+        throw failed(e);
+      }
+      args.endBlob(start);
+    }
+
+    public void arg(Object value) {
+      int start = args.beginBlob();
+      try {
+        //cached and coalesced arguments stay inline so equal arguments always serialize to equal keys
+        if(cache == null && flight == null) {
+          island.codec().encode(export(value), args);
+        } else {
+          island.codec().encode(value, args);
+        }
+      } catch(IOException | RuntimeException e) {
+        throw failed(e);
+      }
+      args.endBlob(start);
+    }
+
+    /**
+     * Moves a large binary argument into shared memory. The blocks are noted so they can be freed if the call is
+     * rejected or fails before it is sent, since then the child never sees them.
+     */
+    private Object export(Object value) {
+      if(memory == null) {
+        memory = island.sharedMemory();
+      }
+      Object exported = memory.export(value);
+      if(exported instanceof SharedRef && ((SharedRef) exported).getData() == null) {
+        if(this.exported == null) {
+          SharedMemory memory = this.memory;
+          List<SharedRef> refs = new ArrayList<>(1);
+          message.setOnDiscard(() -> memory.discard(refs));
+          this.exported = refs;
+        }
+        this.exported.add((SharedRef) exported);
+      }
+      return exported;
+    }
+
+    /**
+     * The call is never completed once an argument fails, so its exported arguments are freed and a pooled call is
+     * given back here.
+     */
+    private RuntimeException failed(Exception e) {
+      message.discard();
+      inUse = false;
+      return e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+    }
+  }
 }
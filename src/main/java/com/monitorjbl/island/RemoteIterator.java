@@ -0,0 +1,135 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCMessage;
+import com.monitorjbl.island.domain.RPCResponse;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Parent side of a streamed result. Chunks are queued by the receiver thread as they arrive and handed out lazily;
+ * every chunk the caller moves past is returned to the child as a credit, so no more than the initial window of chunks
+ * is ever buffered. Closing the iterator before the end cancels the stream in the child.
+ * <p>
+ * The stream holds a call slot until it ends or is closed. One that is dropped without either gives its slot back
+ * once it has gone unread for {@link StreamProducer#CREDIT_TIMEOUT}, when the child would give up on it too; reading
+ * it after that throws.
+ */
+class RemoteIterator<T> implements Iterator<T>, AutoCloseable, ResponseHandler {
+  private static final Object END = new Object();
+
+  private final IPCBridge bridge;
+  private final long id;
+  private final long timeout;
+  private final byte lane;
+  private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+
+  private Iterator<?> current = Collections.emptyIterator();
+  private boolean finished;
+  private volatile long lastRead = System.currentTimeMillis();
+
+  RemoteIterator(IPCBridge bridge, long id, long timeout, byte lane) {
+    this.bridge = bridge;
+    this.id = id;
+    this.timeout = timeout;
+    this.lane = lane;
+  }
+
+  @Override
+  public void onResponse(RPCResponse response) {
+    if(response.isError()) {
+      chunks.add(new RuntimeException(String.valueOf(response.getResponse())));
+    } else {
+      chunks.add(response.getResponse());
+      if(!response.isMore()) {
+        chunks.add(END);
+      }
+    }
+  }
+
+  @Override
+  public void onFailure(Throwable error) {
+    chunks.add(error);
+  }
+
+  @Override
+  public boolean holdsSlot() {
+    return true;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while(!current.hasNext() && !finished) {
+      Object chunk = take();
+      if(chunk == END) {
+        finished = true;
+      } else if(chunk instanceof Throwable) {
+        finished = true;
+        throw chunk instanceof RuntimeException ? (RuntimeException) chunk : new RuntimeException((Throwable) chunk);
+      } else {
+        current = ((List<?>) chunk).iterator();
+        lastRead = System.currentTimeMillis();
+        bridge.post(RPCMessage.streamCredit(id, 1, lane));
+      }
+    }
+    return current.hasNext();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if(!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return (T) current.next();
+  }
+
+  @Override
+  public void close() {
+    if(!finished) {
+      finished = true;
+      if(bridge.removeConsumer(id) != null) {
+        bridge.post(RPCMessage.streamCredit(id, -1, lane));
+      }
+    }
+  }
+
+  /**
+   * Whether nothing has been read from the stream for longer than the child waits for credits.
+   */
+  boolean isIdle(long now) {
+    return now - lastRead > StreamProducer.CREDIT_TIMEOUT;
+  }
+
+  /**
+   * Gives back the slot of a stream nobody is reading, called from outside the reading thread.
+   */
+  void expire() {
+    if(bridge.removeConsumer(id) != null) {
+      bridge.post(RPCMessage.streamCredit(id, -1, lane));
+      chunks.add(new IllegalStateException(
+          "Stream " + id + " was closed after going unread for " + StreamProducer.CREDIT_TIMEOUT + "ms"));
+    }
+  }
+
+  private Object take() {
+    try {
+      Object chunk = chunks.poll(timeout, TimeUnit.MILLISECONDS);
+      if(chunk == null) {
+        close();
+        throw new RuntimeException(new TimeoutException());
+      }
+      return chunk;
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new RuntimeException(e);
+    }
+  }
+}
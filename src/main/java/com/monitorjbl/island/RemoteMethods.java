@@ -0,0 +1,31 @@
+package com.monitorjbl.island;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Puts the methods of a proxied class in an order both JVMs agree on. Method ids are handed out by position in this
+ * list, so the parent and child only need to exchange the base id of a class to agree on every method's id.
+ */
+class RemoteMethods {
+
+  static List<Method> of(Class<?> cls) {
+    return Arrays.stream(cls.getMethods())
+        .filter(m -> !Modifier.isStatic(m.getModifiers()))
+        .filter(m -> m.getDeclaringClass() != Object.class)
+        .sorted(Comparator.comparing(RemoteMethods::signature))
+        .collect(toList());
+  }
+
+  static String signature(Method method) {
+    return method.getName() + Arrays.stream(method.getParameterTypes())
+        .map(Class::getName)
+        .collect(joining(",", "(", ")"));
+  }
+}
@@ -0,0 +1,23 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCResponse;
+
+/**
+ * Receives the response(s) to a call sent through an {@link IPCBridge}. Called on the bridge's receiver thread.
+ */
+interface ResponseHandler {
+  /**
+   * The receiver thread reads every response into the same object, so whatever is needed from it must be copied out
+   * before this returns.
+   */
+  void onResponse(RPCResponse response);
+
+  void onFailure(Throwable error);
+
+  /**
+   * Whether this handler holds one of the bridge's call slots, given back when it is removed.
+   */
+  default boolean holdsSlot() {
+    return false;
+  }
+}
@@ -0,0 +1,118 @@
+package com.monitorjbl.island;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of one {@link Cached} method, keyed on its serialized arguments. An access-ordered map gives LRU eviction;
+ * expired entries are dropped when they are looked up, or when they reach the eldest end of the map. A generation
+ * number bumped by every invalidation stops a call that was already in flight from caching a result fetched before
+ * the invalidation.
+ */
+class ResultCache {
+  static final Object MISS = new Object();
+  private static final Object NULL = new Object();
+
+  private final String method;
+  private final long ttlNanos;
+  private final int maxSize;
+  private final LinkedHashMap<ArgumentsKey, Entry> entries;
+  private long generation;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expirations;
+  private long invalidations;
+
+  ResultCache(String method, Cached cached) {
+    this.method = method;
+    this.ttlNanos = cached.unit().toNanos(cached.ttl());
+    this.maxSize = cached.maxSize();
+    this.entries = new LinkedHashMap<ArgumentsKey, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ArgumentsKey, Entry> eldest) {
+        if(size() <= maxSize) {
+          return false;
+        }
+        if(eldest.getValue().expired(System.nanoTime())) {
+          expirations++;
+        } else {
+          evictions++;
+        }
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached result for {@code args}, or {@link #MISS}.
+   */
+  synchronized Object get(List<byte[]> args) {
+    ArgumentsKey key = new ArgumentsKey(args);
+    Entry entry = entries.get(key);
+    if(entry != null && entry.expired(System.nanoTime())) {
+      entries.remove(key);
+      expirations++;
+      entry = null;
+    }
+    if(entry == null) {
+      misses++;
+      return MISS;
+    }
+    hits++;
+    return entry.value == NULL ? null : entry.value;
+  }
+
+  /**
+   * The current generation, to pass to {@link #put} once the call it was read before has returned.
+   */
+  synchronized long generation() {
+    return generation;
+  }
+
+  synchronized void put(List<byte[]> args, Object value, long generation) {
+    if(generation == this.generation) {
+      entries.put(new ArgumentsKey(args), new Entry(value == null ? NULL : value, System.nanoTime() + ttlNanos));
+    }
+  }
+
+  synchronized void invalidate(List<byte[]> args) {
+    generation++;
+    if(entries.remove(new ArgumentsKey(args)) != null) {
+      invalidations++;
+    }
+  }
+
+  synchronized void invalidateAll() {
+    generation++;
+    invalidations += entries.size();
+    entries.clear();
+  }
+
+  synchronized CacheStats stats() {
+    long now = System.nanoTime();
+    for(Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+      if(it.next().expired(now)) {
+        it.remove();
+        expirations++;
+      }
+    }
+    return new CacheStats(method, entries.size(), hits, misses, evictions, expirations, invalidations);
+  }
+
+  private static class Entry {
+    private final Object value;
+    private final long expires;
+
+    Entry(Object value, long expires) {
+      this.value = value;
+      this.expires = expires;
+    }
+
+    boolean expired(long now) {
+      return now - expires >= 0;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.OS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link TransportType#RING}: each side writes into a single-producer, single-consumer ring buffer in a memory-mapped
+ * file in its send path and reads from the other side's. The file starts with a header page:
+ * <pre>
+ *   int   magic     (written last, once the ring is ready)
+ *   int   capacity  (bytes of data, a power of two)
+ *   long  head      at 64, total bytes published by the writer
+ *   long  tail      at 128, total bytes consumed by the reader
+ * </pre>
+ * followed by the data. Each frame is an int length and its bytes, padded to 8 bytes; a length of -1 marks the rest
+ * of the ring as padding when a frame doesn't fit before the end. The writer only ever stores {@code head} and the
+ * reader only {@code tail}, each after a fence, so there are no locks or CAS loops. Neither side blocks in here:
+ * the bridge's wait strategy decides how they spin or park while the ring is empty or full.
+ */
+class RingTransport implements Transport {
+  private static final Logger log = LoggerFactory.getLogger(RingTransport.class);
+  static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+  static final String RING_FILE = "ring";
+  private static final int MAGIC = 0x49534c52;
+  private static final int CAPACITY_OFFSET = 4;
+  private static final int HEAD_OFFSET = 64;
+  private static final int TAIL_OFFSET = 128;
+  private static final int DATA_OFFSET = 4096;
+  private static final int LENGTH_BYTES = 4;
+  private static final int PADDING = -1;
+
+  private final File rxFile;
+  private final RandomAccessFile txFile;
+  private final MappedByteBuffer tx;
+  private final int txCapacity;
+  private final Bytes<ByteBuffer> out = Bytes.elasticByteBuffer();
+  private long head;
+
+  private RandomAccessFile rxRandomAccessFile;
+  private MappedByteBuffer rx;
+  private Bytes<ByteBuffer> rxBytes;
+  private int rxCapacity;
+  private long tail;
+  private long nextTail;
+
+  RingTransport(File txPath, File rxPath, int capacity) {
+    if(Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Ring capacity must be a power of two");
+    }
+    this.rxFile = new File(rxPath, RING_FILE);
+    this.txCapacity = capacity;
+    try {
+      //created under a temporary name so the reader never maps a half initialised ring
+      txPath.mkdirs();
+      File ring = new File(txPath, RING_FILE);
+      File temp = new File(txPath, RING_FILE + ".tmp");
+      this.txFile = new RandomAccessFile(temp, "rw");
+      txFile.setLength(0);
+      txFile.setLength(DATA_OFFSET + capacity);
+      this.tx = map(txFile, DATA_OFFSET + capacity);
+      tx.putInt(CAPACITY_OFFSET, capacity);
+      tx.putLong(HEAD_OFFSET, 0);
+      tx.putLong(TAIL_OFFSET, 0);
+      OS.memory().storeFence();
+      tx.putInt(0, MAGIC);
+      if(!temp.renameTo(ring)) {
+        throw new IOException("Could not rename " + temp + " to " + ring);
+      }
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static MappedByteBuffer map(RandomAccessFile file, long size) throws IOException {
+    MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.order(ByteOrder.nativeOrder());
+    return buffer;
+  }
+
+  @Override
+  public Bytes<?> beginWrite() {
+    out.clear();
+    return out;
+  }
+
+  @Override
+  public boolean endWrite() {
+    int length = (int) out.writePosition();
+    int size = align(LENGTH_BYTES + length);
+    if(size > txCapacity) {
+      throw new IllegalStateException("Frame of " + length + " bytes does not fit in a ring of " + txCapacity + " bytes");
+    }
+    int offset = (int) (head & (txCapacity - 1));
+    int padding = offset + size > txCapacity ? txCapacity - offset : 0;
+
+    long consumed = tx.getLong(TAIL_OFFSET);
+    //the frame must not overwrite anything before the reader is seen to be done with it
+    OS.memory().loadFence();
+    if(head + padding + size - consumed > txCapacity) {
+      return false;
+    }
+
+    if(padding > 0) {
+      tx.putInt(DATA_OFFSET + offset, PADDING);
+      offset = 0;
+    }
+    tx.putInt(DATA_OFFSET + offset, length);
+    ByteBuffer frame = out.underlyingObject();
+    frame.limit(length).position(0);
+    tx.position(DATA_OFFSET + offset + LENGTH_BYTES);
+    tx.put(frame);
+    frame.clear();
+
+    head += padding + size;
+    OS.memory().storeFence();
+    tx.putLong(HEAD_OFFSET, head);
+    return true;
+  }
+
+  @Override
+  public long maxFrameSize() {
+    return txCapacity - LENGTH_BYTES;
+  }
+
+  @Override
+  public Bytes<?> beginRead() {
+    if(rx == null && !openRx()) {
+      return null;
+    }
+    while(true) {
+      long published = rx.getLong(HEAD_OFFSET);
+      //the frame is only read once its head is seen
+      OS.memory().loadFence();
+      if(published == tail) {
+        return null;
+      }
+      int offset = (int) (tail & (rxCapacity - 1));
+      int length = rx.getInt(DATA_OFFSET + offset);
+      if(length == PADDING) {
+        tail += rxCapacity - offset;
+        continue;
+      }
+      int start = DATA_OFFSET + offset + LENGTH_BYTES;
+      nextTail = tail + align(LENGTH_BYTES + length);
+      rxBytes.readLimit(rxBytes.realCapacity());
+      rxBytes.readPosition(start);
+      rxBytes.readLimit(start + length);
+      return rxBytes;
+    }
+  }
+
+  /**
+   * Maps the other side's ring once it has been created.
+   */
+  private boolean openRx() {
+    if(!rxFile.isFile()) {
+      return false;
+    }
+    try {
+      RandomAccessFile file = new RandomAccessFile(rxFile, "rw");
+      MappedByteBuffer buffer = map(file, file.length());
+      if(buffer.getInt(0) != MAGIC) {
+        file.close();
+        return false;
+      }
+      OS.memory().loadFence();
+      rxRandomAccessFile = file;
+      rxCapacity = buffer.getInt(CAPACITY_OFFSET);
+      rx = buffer;
+      rxBytes = Bytes.wrapForRead(buffer);
+      return true;
+    } catch(IOException e) {
+      log.debug("Could not open {} yet", rxFile, e);
+      return false;
+    }
+  }
+
+  @Override
+  public void endRead() {
+    tail = nextTail;
+    //the frame's bytes must all be read before the writer is allowed to reuse them
+    OS.memory().loadFence();
+    rx.putLong(TAIL_OFFSET, tail);
+  }
+
+  private static int align(int size) {
+    return (size + 7) & ~7;
+  }
+
+  @Override
+  public void close() {
+    try {
+      txFile.close();
+      if(rxRandomAccessFile != null) {
+        rxRandomAccessFile.close();
+      }
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.monitorjbl.island;
+
+/**
+ * Picks the island that should handle a proxied call.
+ */
+interface Router {
+  /**
+   * @param key the value of the method's {@link RoutingKey} parameter, or null if it has none
+   */
+  Island route(Object key);
+}
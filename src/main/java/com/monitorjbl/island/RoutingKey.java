@@ -0,0 +1,16 @@
+package com.monitorjbl.island;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter an {@link IslandPool} should route on. Calls with equal keys (by {@code hashCode()}) go to the
+ * same child as long as the pool isn't resized, and resizing only moves the keys owned by the children that were
+ * added or removed. Calls with a null key fall back to the pool's {@link RoutingStrategy}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface RoutingKey {
+}
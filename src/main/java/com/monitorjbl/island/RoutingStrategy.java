@@ -0,0 +1,17 @@
+package com.monitorjbl.island;
+
+/**
+ * How an {@link IslandPool} spreads calls over its children.
+ */
+public enum RoutingStrategy {
+  /**
+   * Hands calls to each child in turn.
+   */
+  ROUND_ROBIN,
+
+  /**
+   * Hands each call to the child with the fewest calls waiting on a response, so a child stuck on slow calls or a GC
+   * pause stops receiving new work until it catches up.
+   */
+  LEAST_OUTSTANDING
+}
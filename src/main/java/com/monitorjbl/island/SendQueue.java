@@ -0,0 +1,73 @@
+package com.monitorjbl.island;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The queue between the threads making calls and the bridge's sender thread. It is a fixed ring of slots, each with a
+ * sequence number saying whose turn it is to use it, so offering and polling never allocate the way a linked queue's
+ * nodes do. Any number of threads may offer but only one may poll. Producers that find it full wait for the sender to
+ * catch up, for as long as it is still there to do so.
+ */
+class SendQueue<E> {
+  private final Object[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private long head;
+
+  /**
+   * @param capacity rounded up to a power of two
+   */
+  SendQueue(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.slots = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for(int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an element, yielding for as long as the queue is full. Gives up and returns false if {@code open} turns
+   * false meanwhile, since then nothing will ever drain the queue.
+   */
+  boolean offer(E element, BooleanSupplier open) {
+    while(true) {
+      long position = tail.get();
+      int slot = (int) position & mask;
+      long sequence = sequences.get(slot);
+      if(sequence == position) {
+        if(tail.compareAndSet(position, position + 1)) {
+          slots[slot] = element;
+          sequences.lazySet(slot, position + 1);
+          return true;
+        }
+      } else if(sequence < position) {
+        //the slot still holds the element from one lap ago
+        if(!open.getAsBoolean()) {
+          return false;
+        }
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * Takes the oldest element, or returns null if there is none yet. Only called by the consuming thread.
+   */
+  @SuppressWarnings("unchecked")
+  E poll() {
+    int slot = (int) head & mask;
+    if(sequences.get(slot) != head + 1) {
+      return null;
+    }
+    E element = (E) slots[slot];
+    slots[slot] = null;
+    sequences.lazySet(slot, head + mask + 1);
+    head++;
+    return element;
+  }
+}
@@ -0,0 +1,24 @@
+package com.monitorjbl.island;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Encodes every value with plain Java serialization. Slower and several times larger than {@link TaggedCodec}, but
+ * handles any serializable object graph, including ones with shared references or cycles.
+ */
+public class SerializationCodec implements Codec {
+  @Override
+  public byte[] encode(Object value) {
+    return Serializer.serializeObject(value);
+  }
+
+  @Override
+  public Object decode(byte[] bytes) {
+    return Serializer.deserializeObject(new ByteArrayInputStream(bytes));
+  }
+
+  @Override
+  public Object decode(byte[] bytes, int offset, int length) {
+    return Serializer.deserializeObject(new ByteArrayInputStream(bytes, offset, length));
+  }
+}
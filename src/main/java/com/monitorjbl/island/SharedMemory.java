@@ -0,0 +1,135 @@
+package com.monitorjbl.island;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * One side's pair of {@link SharedRegion}s: the one it writes large values into and the one the other side writes
+ * into. Byte arrays of at least {@code threshold} bytes and all ByteBuffers are exported as {@link SharedRef}s; when
+ * the region is disabled (size 0) or full, byte arrays are sent inline as before.
+ */
+class SharedMemory implements AutoCloseable {
+  static final String DIRECTORY = "shared";
+
+  private final SharedRegion local;
+  private final File peerPath;
+  private final int threshold;
+  private volatile SharedRegion peer;
+
+  SharedMemory(File localPath, File peerPath, long size, int threshold) {
+    this.local = size > 0 ? SharedRegion.create(localPath, size) : null;
+    this.peerPath = peerPath;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Returns the value to serialize in place of {@code value}.
+   */
+  Object export(Object value) {
+    if(value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      if(local != null && bytes.length >= threshold) {
+        SharedRef ref = local.write(ByteBuffer.wrap(bytes), false);
+        if(ref != null) {
+          return ref;
+        }
+      }
+    } else if(value instanceof ByteBuffer) {
+      ByteBuffer buffer = (ByteBuffer) value;
+      SharedRef ref = local == null ? null : local.write(buffer, true);
+      if(ref == null) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        ref = new SharedRef(bytes);
+      }
+      return ref;
+    }
+    return value;
+  }
+
+  /**
+   * Resolves an exported argument. ByteBuffers are read-only views straight onto the region and stay valid until the
+   * refs added to {@code borrowed} are passed to {@link #release(List)}.
+   */
+  Object importArgument(Object value, List<SharedRef> borrowed) {
+    if(!(value instanceof SharedRef)) {
+      return value;
+    }
+    SharedRef ref = (SharedRef) value;
+    if(ref.getData() != null) {
+      return ByteBuffer.wrap(ref.getData()).asReadOnlyBuffer();
+    } else if(!ref.isBuffer()) {
+      byte[] bytes = peer().copy(ref);
+      peer().free(ref);
+      return bytes;
+    }
+    borrowed.add(ref);
+    return peer().view(ref);
+  }
+
+  /**
+   * Resolves an exported result. The caller may hold on to a result indefinitely, so it is copied out of the region
+   * and the blocks are freed straight away.
+   */
+  Object importResult(Object value) {
+    if(!(value instanceof SharedRef)) {
+      return value;
+    }
+    SharedRef ref = (SharedRef) value;
+    if(ref.getData() != null) {
+      return ByteBuffer.wrap(ref.getData());
+    }
+    byte[] bytes = peer().copy(ref);
+    peer().free(ref);
+    return ref.isBuffer() ? ByteBuffer.wrap(bytes) : bytes;
+  }
+
+  /**
+   * Frees exported refs that were never sent, so the other side will never free them.
+   */
+  void discard(List<SharedRef> exported) {
+    for(SharedRef ref : exported) {
+      local.free(ref);
+    }
+  }
+
+  /**
+   * Number of blocks of the local region that hold values the other side hasn't freed yet.
+   */
+  int exportedBlocks() {
+    return local == null ? 0 : local.used();
+  }
+
+  /**
+   * Frees the refs {@link #importArgument} borrowed and empties the list, so it can be used for the next call.
+   */
+  void release(List<SharedRef> borrowed) {
+    for(int i = 0; i < borrowed.size(); i++) {
+      peer().free(borrowed.get(i));
+    }
+    borrowed.clear();
+  }
+
+  private SharedRegion peer() {
+    //the other side creates its region before it can send a ref into it
+    if(peer == null) {
+      synchronized(this) {
+        if(peer == null) {
+          peer = SharedRegion.open(peerPath);
+        }
+      }
+    }
+    return peer;
+  }
+
+  @Override
+  public void close() {
+    if(local != null) {
+      local.close();
+    }
+    if(peer != null) {
+      peer.close();
+    }
+  }
+}
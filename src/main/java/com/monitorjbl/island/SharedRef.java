@@ -0,0 +1,58 @@
+package com.monitorjbl.island;
+
+import java.io.Serializable;
+
+/**
+ * Sent over the queue in place of a large {@code byte[]} or {@code ByteBuffer} that was written to the sender's
+ * {@link SharedRegion}. The receiver turns it back into the original type. ByteBuffers can't be serialized, so when
+ * one doesn't go through the region its contents are carried inline instead.
+ */
+class SharedRef implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final int offset;
+  private final int length;
+  private final boolean buffer;
+  private final byte[] data;
+
+  SharedRef(int offset, int length, boolean buffer) {
+    this.offset = offset;
+    this.length = length;
+    this.buffer = buffer;
+    this.data = null;
+  }
+
+  SharedRef(byte[] data) {
+    this.offset = -1;
+    this.length = data.length;
+    this.buffer = true;
+    this.data = data;
+  }
+
+  int getOffset() {
+    return offset;
+  }
+
+  int getLength() {
+    return length;
+  }
+
+  /**
+   * Whether the value was a ByteBuffer, as opposed to a byte[].
+   */
+  boolean isBuffer() {
+    return buffer;
+  }
+
+  /**
+   * The value itself when it was sent inline, otherwise null.
+   */
+  byte[] getData() {
+    return data;
+  }
+
+  @Override
+  public String toString() {
+    return "SharedRef{offset=" + offset + ", length=" + length + ", buffer=" + buffer + "}";
+  }
+}
@@ -0,0 +1,168 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.core.OS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped file that one side of the island writes large binary values into and the other side reads them
+ * from, so only a {@link SharedRef} has to go over the queue. The file is split into fixed-size blocks with a one byte
+ * state per block at the start of the file. Only the writing process marks blocks as used and only the reading
+ * process marks them free again once it is done with them, so neither side needs a lock the other can see.
+ */
+class SharedRegion implements AutoCloseable {
+  static final int BLOCK_SIZE = 4096;
+  private static final byte FREE = 0;
+  private static final byte USED = 1;
+
+  private final RandomAccessFile file;
+  private final MappedByteBuffer buffer;
+  private final int headerBlocks;
+  private final int blocks;
+  private int cursor;
+
+  private SharedRegion(RandomAccessFile file, long size) throws IOException {
+    this.file = file;
+    this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    int totalBlocks = (int) (size / BLOCK_SIZE);
+    this.headerBlocks = (totalBlocks + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    this.blocks = totalBlocks - headerBlocks;
+  }
+
+  /**
+   * Creates the region this process writes into. Any existing file at the path is truncated.
+   */
+  static SharedRegion create(File path, long size) {
+    if(size < 2 * BLOCK_SIZE || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Shared memory size must be between " + 2 * BLOCK_SIZE + " and " + Integer.MAX_VALUE);
+    }
+    try {
+      path.getParentFile().mkdirs();
+      RandomAccessFile file = new RandomAccessFile(path, "rw");
+      file.setLength(0);
+      file.setLength(size);
+      return new SharedRegion(file, size);
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Maps a region created by the other process.
+   */
+  static SharedRegion open(File path) {
+    try {
+      RandomAccessFile file = new RandomAccessFile(path, "rw");
+      return new SharedRegion(file, file.length());
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Copies {@code src} into free blocks and returns a reference to it, or null if there isn't a large enough run of
+   * free blocks left.
+   */
+  SharedRef write(ByteBuffer src, boolean asBuffer) {
+    int length = src.remaining();
+    int offset = allocate(Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE));
+    if(offset < 0) {
+      return null;
+    }
+    ByteBuffer dest = buffer.duplicate();
+    dest.position(offset);
+    dest.put(src.duplicate());
+    OS.memory().storeFence();
+    return new SharedRef(offset, length, asBuffer);
+  }
+
+  /**
+   * Read-only view of a value written by the other process. It stays valid until {@link #free(SharedRef)} is called.
+   */
+  ByteBuffer view(SharedRef ref) {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(ref.getOffset() + ref.getLength()).position(ref.getOffset());
+    return view.slice().asReadOnlyBuffer();
+  }
+
+  byte[] copy(SharedRef ref) {
+    byte[] bytes = new byte[ref.getLength()];
+    ByteBuffer view = buffer.duplicate();
+    view.position(ref.getOffset());
+    view.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Hands the blocks behind {@code ref} back to the writer. Called by the reading process once nothing refers to them,
+   * or by the writer for a ref it never sent.
+   */
+  void free(SharedRef ref) {
+    //the reads of the value must not be reordered after the blocks are handed back
+    OS.memory().loadFence();
+    int first = ref.getOffset() / BLOCK_SIZE - headerBlocks;
+    int count = Math.max(1, (ref.getLength() + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    for(int i = first; i < first + count; i++) {
+      buffer.put(i, FREE);
+    }
+  }
+
+  /**
+   * Number of blocks currently marked as used.
+   */
+  int used() {
+    OS.memory().loadFence();
+    int used = 0;
+    for(int i = 0; i < blocks; i++) {
+      if(buffer.get(i) != FREE) {
+        used++;
+      }
+    }
+    return used;
+  }
+
+  private synchronized int allocate(int count) {
+    if(count > blocks) {
+      return -1;
+    }
+    OS.memory().loadFence();
+    int start = cursor;
+    int scanned = 0;
+    while(scanned < blocks) {
+      if(start + count > blocks) {
+        scanned += blocks - start;
+        start = 0;
+        continue;
+      }
+      int run = 0;
+      while(run < count && buffer.get(start + run) == FREE) {
+        run++;
+      }
+      if(run == count) {
+        for(int i = start; i < start + count; i++) {
+          buffer.put(i, USED);
+        }
+        cursor = start + count == blocks ? 0 : start + count;
+        return (headerBlocks + start) * BLOCK_SIZE;
+      }
+      scanned += run + 1;
+      start += run + 1;
+    }
+    return -1;
+  }
+
+  @Override
+  public void close() {
+    try {
+      file.close();
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
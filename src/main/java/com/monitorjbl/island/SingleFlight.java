@@ -0,0 +1,120 @@
+package com.monitorjbl.island;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Calls of one {@link Coalesce} method that are in flight, keyed on their serialized arguments. The first caller for a
+ * key sends the invocation; anyone who arrives before it completes waits on the same call instead.
+ * <p>
+ * Every caller gets a future of its own, so completing or cancelling it can't affect the others. Like the future of a
+ * plain call, its {@code get()} gives up once the shared call has been in flight for the bridge's default timeout;
+ * the first caller to give up fails the shared call for everyone and frees its slot, so a hung invocation can't hold
+ * its callers, or later ones with the same arguments, forever.
+ */
+class SingleFlight {
+  private final ConcurrentHashMap<ArgumentsKey, Flight> calls = new ConcurrentHashMap<>();
+  private final long timeoutNanos;
+  private final Runnable onCoalesced;
+
+  /**
+   * @param timeoutMillis how long {@code get()} waits for the shared call, counted from when it was sent
+   * @param onCoalesced   called for every call that joins one already in flight
+   */
+  SingleFlight(long timeoutMillis, Runnable onCoalesced) {
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    this.onCoalesced = onCoalesced;
+  }
+
+  /**
+   * Returns a future of the identical call in flight, or starts one with {@code send}.
+   */
+  CompletableFuture<Object> call(List<byte[]> args, Supplier<CompletableFuture<Object>> send) {
+    ArgumentsKey key = new ArgumentsKey(args);
+    Flight flight = new Flight(key);
+    Flight existing = calls.putIfAbsent(key, flight);
+    if(existing != null) {
+      onCoalesced.run();
+      return new Waiter(existing);
+    }
+
+    //a future that has already failed, such as a rejected call, completes this before the callback is even registered
+    flight.sent = send.get();
+    flight.sent.whenComplete((value, error) -> {
+      calls.remove(key, flight);
+      if(error != null) {
+        flight.result.completeExceptionally(error);
+      } else {
+        flight.result.complete(value);
+      }
+    });
+    if(flight.result.isCompletedExceptionally()) {
+      //a caller gave up on it before it was even sent
+      flight.sent.cancel(false);
+    }
+    return new Waiter(flight);
+  }
+
+  private class Flight {
+    private final ArgumentsKey key;
+    private final long deadline = System.nanoTime() + timeoutNanos;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    private volatile CompletableFuture<Object> sent;
+
+    private Flight(ArgumentsKey key) {
+      this.key = key;
+    }
+
+    /**
+     * Fails the shared call if it has been in flight for the whole timeout, which also hands back its slot.
+     */
+    private void expireIfDue(TimeoutException e) {
+      if(System.nanoTime() - deadline >= 0 && result.completeExceptionally(new RuntimeException(e))) {
+        calls.remove(key, this);
+        CompletableFuture<Object> call = sent;
+        if(call != null) {
+          call.cancel(false);
+        }
+      }
+    }
+  }
+
+  private static class Waiter extends CompletableFuture<Object> {
+    private final Flight flight;
+
+    private Waiter(Flight flight) {
+      this.flight = flight;
+      flight.result.whenComplete((value, error) -> {
+        if(error != null) {
+          completeExceptionally(error);
+        } else {
+          complete(value);
+        }
+      });
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      try {
+        return get(flight.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch(TimeoutException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      try {
+        return super.get(timeout, unit);
+      } catch(TimeoutException e) {
+        flight.expireIfDue(e);
+        throw e;
+      }
+    }
+  }
+}
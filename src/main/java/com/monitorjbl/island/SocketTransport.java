@@ -0,0 +1,265 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * {@link TransportType#SOCKET}: each side listens on a socket in its receive path and connects to the one in its send
+ * path, so there is one connection per direction. Frames are an int length followed by the bytes. All I/O is
+ * non-blocking so the bridge's threads keep to their wait strategy while the other side starts up or falls behind.
+ * <p>
+ * On Java 16 and later the listener binds a Unix domain socket file, reached by reflection so the library still builds
+ * for 8. Before that it listens on a loopback TCP port and publishes the port number in a file instead. The connecting
+ * side uses whichever of the two it finds.
+ */
+class SocketTransport implements Transport {
+  private static final Logger log = LoggerFactory.getLogger(SocketTransport.class);
+  static final String SOCKET_FILE = "island.sock";
+  static final String PORT_FILE = "island.port";
+  private static final int LENGTH_BYTES = 4;
+
+  private final File txPath;
+  private final ServerSocketChannel server;
+  private final Bytes<ByteBuffer> out = Bytes.elasticByteBuffer();
+  private SocketChannel tx;
+  private SocketChannel rx;
+  private ByteBuffer pending;
+  private ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+  private Bytes<ByteBuffer> inBytes = Bytes.wrapForRead(in);
+  private int frameEnd;
+
+  SocketTransport(File txPath, File rxPath) {
+    this.txPath = txPath;
+    try {
+      rxPath.mkdirs();
+      Path socketPath = new File(rxPath, SOCKET_FILE).getAbsoluteFile().toPath();
+      Path portPath = new File(rxPath, PORT_FILE).toPath();
+      Files.deleteIfExists(socketPath);
+      Files.deleteIfExists(portPath);
+      if(UnixSockets.SUPPORTED) {
+        this.server = UnixSockets.openServer();
+        this.server.bind(UnixSockets.address(socketPath));
+      } else {
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        //written under a temporary name so the other side never reads a partial port number
+        Path temp = new File(rxPath, PORT_FILE + ".tmp").toPath();
+        Files.write(temp, String.valueOf(server.socket().getLocalPort()).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temp, portPath, StandardCopyOption.ATOMIC_MOVE);
+      }
+      this.server.configureBlocking(false);
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public Bytes<?> beginWrite() {
+    out.clear();
+    out.writeInt(0);
+    return out;
+  }
+
+  @Override
+  public boolean endWrite() {
+    if(tx == null && (tx = connect()) == null) {
+      return false;
+    }
+    if(pending == null) {
+      out.writeInt(0, (int) out.writePosition() - LENGTH_BYTES);
+      pending = out.underlyingObject();
+      pending.limit((int) out.writePosition()).position(0);
+    }
+    try {
+      tx.write(pending);
+    } catch(IOException e) {
+      //the frame can't be resumed on a new connection, so it is dropped along with this one
+      closeQuietly(tx);
+      tx = null;
+      pending.clear();
+      pending = null;
+      throw new UncheckedIOException(e);
+    }
+    if(pending.hasRemaining()) {
+      return false;
+    }
+    pending.clear();
+    pending = null;
+    return true;
+  }
+
+  /**
+   * Connects to the other side's listener, or returns null if it isn't listening yet.
+   */
+  private SocketChannel connect() {
+    File socketFile = new File(txPath, SOCKET_FILE);
+    File portFile = new File(txPath, PORT_FILE);
+    SocketChannel channel = null;
+    try {
+      if(socketFile.exists()) {
+        channel = UnixSockets.openClient();
+        channel.connect(UnixSockets.address(socketFile.getAbsoluteFile().toPath()));
+      } else if(portFile.isFile()) {
+        int port = Integer.parseInt(new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.US_ASCII));
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        channel.socket().setTcpNoDelay(true);
+      } else {
+        return null;
+      }
+      channel.configureBlocking(false);
+      return channel;
+    } catch(IOException | UncheckedIOException e) {
+      log.debug("Could not connect to {} yet", txPath, e);
+      closeQuietly(channel);
+      return null;
+    }
+  }
+
+  @Override
+  public Bytes<?> beginRead() {
+    try {
+      if(rx == null) {
+        rx = server.accept();
+        if(rx == null) {
+          return null;
+        }
+        rx.configureBlocking(false);
+      }
+      if(!frameBuffered() && (rx.read(in) <= 0 || !frameBuffered())) {
+        return null;
+      }
+    } catch(IOException e) {
+      closeQuietly(rx);
+      rx = null;
+      in.clear();
+      throw new UncheckedIOException(e);
+    }
+    int length = in.getInt(0);
+    frameEnd = LENGTH_BYTES + length;
+    inBytes.readLimit(frameEnd);
+    inBytes.readPosition(LENGTH_BYTES);
+    return inBytes;
+  }
+
+  /**
+   * Whether a whole frame has been read into the buffer, growing it if the next frame won't fit.
+   */
+  private boolean frameBuffered() {
+    if(in.position() < LENGTH_BYTES) {
+      return false;
+    }
+    int needed = LENGTH_BYTES + in.getInt(0);
+    if(needed > in.capacity()) {
+      ByteBuffer grown = ByteBuffer.allocateDirect(Integer.highestOneBit(needed - 1) << 1).order(ByteOrder.nativeOrder());
+      in.flip();
+      grown.put(in);
+      in = grown;
+      inBytes = Bytes.wrapForRead(in);
+    }
+    return in.position() >= needed;
+  }
+
+  @Override
+  public void endRead() {
+    //move whatever arrived after this frame to the start of the buffer
+    in.limit(in.position()).position(frameEnd);
+    in.compact();
+    inBytes.readLimit(in.capacity());
+    inBytes.readPosition(0);
+  }
+
+  @Override
+  public void close() {
+    closeQuietly(tx);
+    closeQuietly(rx);
+    closeQuietly(server);
+  }
+
+  private static void closeQuietly(AutoCloseable closeable) {
+    if(closeable != null) {
+      try {
+        closeable.close();
+      } catch(Exception e) {
+        log.debug("Could not close {}", closeable, e);
+      }
+    }
+  }
+
+  /**
+   * Reflective access to the Java 16 Unix domain socket API.
+   */
+  private static class UnixSockets {
+    static final boolean SUPPORTED;
+    private static final ProtocolFamily UNIX;
+    private static final Method ADDRESS_OF;
+    private static final Method OPEN_SERVER;
+    private static final Method OPEN_CLIENT;
+
+    static {
+      ProtocolFamily family = null;
+      Method addressOf = null;
+      Method openServer = null;
+      Method openClient = null;
+      try {
+        family = StandardProtocolFamily.valueOf("UNIX");
+        addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+        openServer = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+        openClient = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+      } catch(ReflectiveOperationException | IllegalArgumentException e) {
+        family = null;
+      }
+      SUPPORTED = family != null;
+      UNIX = family;
+      ADDRESS_OF = addressOf;
+      OPEN_SERVER = openServer;
+      OPEN_CLIENT = openClient;
+    }
+
+    static SocketAddress address(Path path) {
+      return (SocketAddress) invoke(ADDRESS_OF, path);
+    }
+
+    static ServerSocketChannel openServer() {
+      return (ServerSocketChannel) invoke(OPEN_SERVER, UNIX);
+    }
+
+    static SocketChannel openClient() {
+      return (SocketChannel) invoke(OPEN_CLIENT, UNIX);
+    }
+
+    private static Object invoke(Method method, Object arg) {
+      if(!SUPPORTED) {
+        throw new UnsupportedOperationException("Unix domain sockets need Java 16 or later, this is "
+            + System.getProperty("java.version"));
+      }
+      try {
+        return method.invoke(null, arg);
+      } catch(ReflectiveOperationException e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        if(cause instanceof IOException) {
+          throw new UncheckedIOException((IOException) cause);
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+  }
+}
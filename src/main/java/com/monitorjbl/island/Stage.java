@@ -0,0 +1,32 @@
+package com.monitorjbl.island;
+
+/**
+ * The parts a remote call's latency is broken down into.
+ */
+public enum Stage {
+  /**
+   * Routing the call and serializing its arguments in the proxy.
+   */
+  SERIALIZE,
+  /**
+   * Waiting in the bridge's send queue for the sender thread to write it.
+   */
+  SEND_QUEUE,
+  /**
+   * Everything between the call being written and the response being read that the child doesn't account for: both
+   * queue hops, decoding the arguments and encoding the result in the child, and waiting in the child's send queue.
+   */
+  TRANSPORT,
+  /**
+   * Waiting in the child's thread pool queue.
+   */
+  CHILD_QUEUE,
+  /**
+   * Running the method in the child.
+   */
+  EXECUTION,
+  /**
+   * From the proxy being called to the response being read by the parent.
+   */
+  TOTAL
+}
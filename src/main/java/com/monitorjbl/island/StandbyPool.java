@@ -0,0 +1,114 @@
+package com.monitorjbl.island;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Keeps a number of children started and warmed up in the background so callers that need an island right now don't
+ * wait for a JVM to boot. Every island handed out is replaced with a fresh one.
+ */
+public class StandbyPool implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(StandbyPool.class);
+  static final int WARMUP_CALLS = 2000;
+
+  private final String queueBasePath;
+  private final int size;
+  private final Function<String, Island> factory;
+  private final BlockingQueue<Island> ready = new LinkedBlockingQueue<>();
+  private final AtomicInteger counter = new AtomicInteger();
+  private final ExecutorService spawner = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "standby");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private int spawning;
+  private volatile boolean closed;
+
+  StandbyPool(String queueBasePath, int size, Function<String, Island> factory) {
+    this.queueBasePath = queueBasePath;
+    this.size = size;
+    this.factory = factory;
+  }
+
+  public void start() {
+    replenish();
+  }
+
+  /**
+   * Hands out a started island. If none are ready yet, one is started on the calling thread.
+   */
+  public Island take() {
+    if(closed) {
+      throw new IllegalStateException("Standby pool is closed");
+    }
+    Island island = ready.poll();
+    if(island == null) {
+      log.info("No standby child ready, starting one");
+      island = factory.apply(nextPath());
+      island.startup();
+    }
+    replenish();
+    return island;
+  }
+
+  /**
+   * Number of children ready to be handed out.
+   */
+  public int available() {
+    return ready.size();
+  }
+
+  private synchronized void replenish() {
+    while(!closed && ready.size() + spawning < size) {
+      spawning++;
+      spawner.execute(this::spawn);
+    }
+  }
+
+  private void spawn() {
+    try {
+      Island island = factory.apply(nextPath());
+      island.startup();
+      island.warmup(WARMUP_CALLS);
+      if(closed) {
+        island.shutdown();
+      } else {
+        ready.add(island);
+      }
+    } catch(Exception e) {
+      log.error("Could not start standby child", e);
+    } finally {
+      synchronized(this) {
+        spawning--;
+      }
+    }
+  }
+
+  private String nextPath() {
+    return queueBasePath + "/standby-" + counter.getAndIncrement();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    spawner.shutdown();
+    try {
+      spawner.awaitTermination(1, TimeUnit.MINUTES);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Island island;
+    while((island = ready.poll()) != null) {
+      island.shutdown();
+    }
+  }
+}
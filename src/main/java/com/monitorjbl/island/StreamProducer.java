@@ -0,0 +1,140 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Child side of a streamed result. Pulls from the method's iterator one chunk at a time and only sends a chunk when
+ * the parent has granted a credit for it, so a slow consumer holds back the producer instead of the result piling up
+ * in either JVM. While it is out of credits the producer gives its executor thread back, and the next grant resumes
+ * it on the same executor, so slow or abandoned streams don't tie up the threads other calls run on.
+ */
+class StreamProducer {
+  private static final Logger log = LoggerFactory.getLogger(StreamProducer.class);
+  static final long CREDIT_TIMEOUT = 60000;
+
+  private final IPCBridge bridge;
+  private final long id;
+  private final Iterator<?> iterator;
+  private final AutoCloseable resource;
+  private final int chunkSize;
+  private final byte lane;
+  private final Executor executor;
+  private final Runnable onDone;
+  private final AtomicInteger credits;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile boolean cancelled;
+  private volatile long lastCredit = System.currentTimeMillis();
+
+  /**
+   * @param executor runs the producer whenever it has credits to spend
+   * @param onDone   called once the stream has ended, failed or been cancelled, on the producer's thread
+   */
+  StreamProducer(IPCBridge bridge, long id, Iterator<?> iterator, AutoCloseable resource, int credits, int chunkSize,
+      byte lane, Executor executor, Runnable onDone) {
+    this.bridge = bridge;
+    this.id = id;
+    this.iterator = iterator;
+    this.resource = resource;
+    this.chunkSize = chunkSize;
+    this.lane = lane;
+    this.executor = executor;
+    this.onDone = onDone;
+    this.credits = new AtomicInteger(credits);
+  }
+
+  void grant(int count) {
+    lastCredit = System.currentTimeMillis();
+    if(count < 0) {
+      cancelled = true;
+    } else {
+      credits.addAndGet(count);
+    }
+    schedule();
+  }
+
+  /**
+   * Cancels the stream if the parent hasn't granted a credit for longer than {@link #CREDIT_TIMEOUT}.
+   */
+  void expireIfIdle(long now) {
+    if(!cancelled && now - lastCredit > CREDIT_TIMEOUT) {
+      log.warn("Stream {} got no credit in {}ms, abandoning it", id, CREDIT_TIMEOUT);
+      cancelled = true;
+      schedule();
+    }
+  }
+
+  /**
+   * Runs the producer on the calling thread, which must be a thread of its executor.
+   */
+  void start() {
+    scheduled.set(true);
+    run();
+  }
+
+  private void schedule() {
+    if(scheduled.compareAndSet(false, true)) {
+      executor.execute(this::run);
+    }
+  }
+
+  private void reply(RPCResponse response) {
+    response.setLane(lane);
+    bridge.reply(response);
+  }
+
+  private void run() {
+    try {
+      while(true) {
+        if(cancelled) {
+          log.debug("Stream {} cancelled", id);
+          finish();
+          return;
+        }
+        if(credits.get() == 0) {
+          scheduled.set(false);
+          //a grant that came in before the flag was cleared didn't schedule another run, so this one carries on
+          if((credits.get() == 0 && !cancelled) || !scheduled.compareAndSet(false, true)) {
+            return;
+          }
+          continue;
+        }
+        credits.decrementAndGet();
+
+        List<Object> chunk = new ArrayList<>(chunkSize);
+        while(chunk.size() < chunkSize && iterator.hasNext()) {
+          chunk.add(iterator.next());
+        }
+        boolean more = iterator.hasNext();
+        reply(new RPCResponse(id, false, chunk, more));
+        if(!more) {
+          finish();
+          return;
+        }
+      }
+    } catch(Exception e) {
+      log.error("Stream {} failed", id, e);
+      reply(new RPCResponse(id, true, e.toString()));
+      finish();
+    }
+  }
+
+  private void finish() {
+    if(resource != null) {
+      try {
+        resource.close();
+      } catch(Exception e) {
+        log.warn("Could not close stream {}", id, e);
+      }
+    }
+    onDone.run();
+  }
+}
@@ -0,0 +1,130 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCMessage;
+import com.monitorjbl.island.domain.RPCResponse;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A synchronous invocation whose message, argument buffer and response handler are reused from one call to the next
+ * by the thread that owns it, so making the call creates no garbage. The owner parks until the receiver thread hands
+ * it the response. A call that stopped waiting before its response came is abandoned for good, since the sender or
+ * the receiver may still get to it.
+ */
+class SyncCall implements ResponseHandler {
+  private static final int SPINS = 1000;
+
+  private final RPCMessage message = RPCMessage.invocation();
+  private final EncodeBuffer arguments = new EncodeBuffer();
+  private Metrics metrics;
+  private Thread owner;
+  private Object result;
+  private boolean error;
+  private Throwable failure;
+  private boolean abandoned;
+  private volatile boolean done;
+
+  RPCMessage message() {
+    return message;
+  }
+
+  EncodeBuffer arguments() {
+    return arguments;
+  }
+
+  /**
+   * Starts a new call to {@code methodId}, whose arguments are then written to {@link #arguments()}.
+   */
+  void reset(int methodId, byte lane, long startNanos) {
+    arguments.reset();
+    message.setOnDiscard(null);
+    message.setMethodId(methodId);
+    message.setLane(lane);
+    message.setStartNanos(startNanos);
+  }
+
+  /**
+   * Called by the bridge on the owning thread once the arguments have been written, just before the call is sent.
+   */
+  void prepare(Metrics metrics) {
+    this.metrics = metrics;
+    this.owner = Thread.currentThread();
+    this.result = null;
+    this.error = false;
+    this.failure = null;
+    this.done = false;
+    message.setEncodedParameters(arguments.array(), arguments.size(), arguments.blobs());
+  }
+
+  @Override
+  public boolean holdsSlot() {
+    return true;
+  }
+
+  @Override
+  public void onResponse(RPCResponse reply) {
+    if(metrics != null) {
+      metrics.record(message, reply);
+    }
+    error = reply.isError();
+    result = reply.getResponse();
+    done = true;
+    LockSupport.unpark(owner);
+  }
+
+  @Override
+  public void onFailure(Throwable error) {
+    if(metrics != null) {
+      metrics.failed(message);
+    }
+    failure = error;
+    done = true;
+    LockSupport.unpark(owner);
+  }
+
+  /**
+   * Waits for the response, spinning briefly before parking. Returns false if none came within {@code timeoutNanos}.
+   */
+  boolean await(long timeoutNanos) throws InterruptedException {
+    for(int i = 0; i < SPINS; i++) {
+      if(done) {
+        return true;
+      }
+    }
+    long deadline = System.nanoTime() + timeoutNanos;
+    while(!done) {
+      if(Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      long remaining = deadline - System.nanoTime();
+      if(remaining <= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(this, remaining);
+    }
+    return true;
+  }
+
+  /**
+   * The response value, or the error it carried thrown the same way an asynchronous call's future would.
+   */
+  Object result() throws Throwable {
+    if(failure != null) {
+      throw failure;
+    }
+    if(error) {
+      throw new RuntimeException(String.valueOf(result));
+    }
+    Object value = result;
+    result = null;
+    return value;
+  }
+
+  void abandon() {
+    abandoned = true;
+  }
+
+  boolean isAbandoned() {
+    return abandoned;
+  }
+}
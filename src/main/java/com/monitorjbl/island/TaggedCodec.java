@@ -0,0 +1,530 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.core.OS;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The default {@link Codec}. Every value starts with a one byte tag. Primitives and their boxes, Strings, primitive
+ * and Object arrays, ArrayLists and hash maps and sets are written directly, so an int takes 5 bytes instead of the
+ * 81 Java serialization needs. Instances of registered classes are written as the class id followed by their fields
+ * in a fixed order; they are created on the other side without calling a constructor, like serializable classes are.
+ * Anything else is written with Java serialization.
+ * <p>
+ * Only the exact classes above get the short encodings, so a value always comes back as the class it was sent as.
+ * Unlike Java serialization, shared references inside registered objects and collections are written once per
+ * reference, and cycles through them aren't supported.
+ */
+public class TaggedCodec implements Codec {
+  private static final byte NULL = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte CHAR = 5;
+  private static final byte INT = 6;
+  private static final byte LONG = 7;
+  private static final byte FLOAT = 8;
+  private static final byte DOUBLE = 9;
+  private static final byte STRING = 10;
+  private static final byte BYTE_ARRAY = 11;
+  private static final byte INT_ARRAY = 12;
+  private static final byte LONG_ARRAY = 13;
+  private static final byte DOUBLE_ARRAY = 14;
+  private static final byte OBJECT_ARRAY = 15;
+  private static final byte STRING_ARRAY = 16;
+  private static final byte ARRAY_LIST = 17;
+  private static final byte HASH_MAP = 18;
+  private static final byte LINKED_HASH_MAP = 19;
+  private static final byte HASH_SET = 20;
+  private static final byte LINKED_HASH_SET = 21;
+  private static final byte SHARED_REF = 22;
+  private static final byte REGISTERED = 23;
+  private static final byte SERIALIZED = 24;
+  private static final ThreadLocal<Input> INPUT = ThreadLocal.withInitial(Input::new);
+
+  private final List<Class<?>> registered = new CopyOnWriteArrayList<>();
+  private final Map<Class<?>, Integer> ids = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Field[]> fields = new ConcurrentHashMap<>();
+
+  @Override
+  public synchronized void register(Class<?> type) {
+    if(!ids.containsKey(type)) {
+      if(!type.isEnum()) {
+        fields.put(type, fieldsOf(type));
+      }
+      ids.put(type, registered.size());
+      registered.add(type);
+    }
+  }
+
+  @Override
+  public byte[] encode(Object value) {
+    EncodeBuffer out = new EncodeBuffer();
+    write(out, value);
+    return out.toByteArray();
+  }
+
+  @Override
+  public void encode(Object value, OutputStream out) throws IOException {
+    EncodeBuffer buffer = buffer(out);
+    write(buffer, value);
+    flush(buffer, out);
+  }
+
+  @Override
+  public void encode(int value, OutputStream out) throws IOException {
+    EncodeBuffer buffer = buffer(out);
+    buffer.write(INT);
+    buffer.writeInt(value);
+    flush(buffer, out);
+  }
+
+  @Override
+  public void encode(long value, OutputStream out) throws IOException {
+    EncodeBuffer buffer = buffer(out);
+    buffer.write(LONG);
+    buffer.writeLong(value);
+    flush(buffer, out);
+  }
+
+  @Override
+  public void encode(double value, OutputStream out) throws IOException {
+    EncodeBuffer buffer = buffer(out);
+    buffer.write(DOUBLE);
+    buffer.writeLong(Double.doubleToRawLongBits(value));
+    flush(buffer, out);
+  }
+
+  @Override
+  public void encode(boolean value, OutputStream out) throws IOException {
+    out.write(value ? TRUE : FALSE);
+  }
+
+  @Override
+  public Object decode(byte[] bytes) {
+    return decode(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Reads the range in place through an input kept by the decoding thread, or a new one if that thread is already
+   * decoding, say from inside a class's own {@code readObject}.
+   */
+  @Override
+  public Object decode(byte[] bytes, int offset, int length) {
+    Input in = INPUT.get();
+    if(in.buffer != null) {
+      return read(new Input().reset(bytes, offset));
+    }
+    try {
+      return read(in.reset(bytes, offset));
+    } finally {
+      in.buffer = null;
+    }
+  }
+
+  /**
+   * Values are written straight into the island's own buffers, and into a temporary one for any other stream.
+   */
+  private static EncodeBuffer buffer(OutputStream out) {
+    return out instanceof EncodeBuffer ? (EncodeBuffer) out : new EncodeBuffer();
+  }
+
+  private static void flush(EncodeBuffer buffer, OutputStream out) throws IOException {
+    if(buffer != out) {
+      out.write(buffer.array(), 0, buffer.size());
+    }
+  }
+
+  private void write(EncodeBuffer out, Object value) {
+    if(value == null) {
+      out.write(NULL);
+      return;
+    }
+
+    Class<?> type = value.getClass();
+    if(type == Integer.class) {
+      out.write(INT);
+      out.writeInt((Integer) value);
+    } else if(type == String.class) {
+      out.write(STRING);
+      out.writeUtf8((String) value);
+    } else if(type == Long.class) {
+      out.write(LONG);
+      out.writeLong((Long) value);
+    } else if(type == Boolean.class) {
+      out.write((Boolean) value ? TRUE : FALSE);
+    } else if(type == Double.class) {
+      out.write(DOUBLE);
+      out.writeLong(Double.doubleToRawLongBits((Double) value));
+    } else if(type == Float.class) {
+      out.write(FLOAT);
+      out.writeInt(Float.floatToRawIntBits((Float) value));
+    } else if(type == Byte.class) {
+      out.write(BYTE);
+      out.write((Byte) value);
+    } else if(type == Short.class) {
+      out.write(SHORT);
+      out.writeShort((Short) value);
+    } else if(type == Character.class) {
+      out.write(CHAR);
+      out.writeShort((Character) value);
+    } else if(type == byte[].class) {
+      byte[] array = (byte[]) value;
+      out.write(BYTE_ARRAY);
+      out.writeInt(array.length);
+      out.write(array, 0, array.length);
+    } else if(type == int[].class) {
+      int[] array = (int[]) value;
+      out.write(INT_ARRAY);
+      out.writeInt(array.length);
+      for(int element : array) {
+        out.writeInt(element);
+      }
+    } else if(type == long[].class) {
+      long[] array = (long[]) value;
+      out.write(LONG_ARRAY);
+      out.writeInt(array.length);
+      for(long element : array) {
+        out.writeLong(element);
+      }
+    } else if(type == double[].class) {
+      double[] array = (double[]) value;
+      out.write(DOUBLE_ARRAY);
+      out.writeInt(array.length);
+      for(double element : array) {
+        out.writeLong(Double.doubleToRawLongBits(element));
+      }
+    } else if(type == Object[].class || type == String[].class) {
+      Object[] array = (Object[]) value;
+      out.write(type == Object[].class ? OBJECT_ARRAY : STRING_ARRAY);
+      out.writeInt(array.length);
+      for(Object element : array) {
+        write(out, element);
+      }
+    } else if(type == ArrayList.class) {
+      writeCollection(out, ARRAY_LIST, (Collection<?>) value);
+    } else if(type == HashSet.class) {
+      writeCollection(out, HASH_SET, (Collection<?>) value);
+    } else if(type == LinkedHashSet.class) {
+      writeCollection(out, LINKED_HASH_SET, (Collection<?>) value);
+    } else if(type == HashMap.class || type == LinkedHashMap.class) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      out.write(type == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+      out.writeInt(map.size());
+      for(Map.Entry<?, ?> entry : map.entrySet()) {
+        write(out, entry.getKey());
+        write(out, entry.getValue());
+      }
+    } else if(type == SharedRef.class) {
+      SharedRef ref = (SharedRef) value;
+      out.write(SHARED_REF);
+      if(ref.getData() != null) {
+        out.writeInt(-1);
+        out.writeInt(ref.getData().length);
+        out.write(ref.getData(), 0, ref.getData().length);
+      } else {
+        out.writeInt(ref.getOffset());
+        out.writeInt(ref.getLength());
+        out.write(ref.isBuffer() ? TRUE : FALSE);
+      }
+    } else {
+      Integer id = ids.get(value instanceof Enum ? ((Enum<?>) value).getDeclaringClass() : type);
+      if(id != null) {
+        out.write(REGISTERED);
+        out.writeInt(id);
+        writeRegistered(out, value);
+      } else {
+        byte[] serialized = Serializer.serializeObject(value);
+        out.write(SERIALIZED);
+        out.writeInt(serialized.length);
+        out.write(serialized, 0, serialized.length);
+      }
+    }
+  }
+
+  private void writeCollection(EncodeBuffer out, byte tag, Collection<?> collection) {
+    out.write(tag);
+    out.writeInt(collection.size());
+    for(Object element : collection) {
+      write(out, element);
+    }
+  }
+
+  private void writeRegistered(EncodeBuffer out, Object value) {
+    if(value instanceof Enum) {
+      out.writeInt(((Enum<?>) value).ordinal());
+      return;
+    }
+    try {
+      for(Field field : fields.get(value.getClass())) {
+        Class<?> type = field.getType();
+        if(type == int.class) {
+          out.writeInt(field.getInt(value));
+        } else if(type == long.class) {
+          out.writeLong(field.getLong(value));
+        } else if(type == boolean.class) {
+          out.write(field.getBoolean(value) ? TRUE : FALSE);
+        } else if(type == double.class) {
+          out.writeLong(Double.doubleToRawLongBits(field.getDouble(value)));
+        } else if(type == float.class) {
+          out.writeInt(Float.floatToRawIntBits(field.getFloat(value)));
+        } else if(type == byte.class) {
+          out.write(field.getByte(value));
+        } else if(type == short.class) {
+          out.writeShort(field.getShort(value));
+        } else if(type == char.class) {
+          out.writeShort(field.getChar(value));
+        } else {
+          write(out, field.get(value));
+        }
+      }
+    } catch(IllegalAccessException e) {
+      throw new IllegalStateException("Could not encode " + value.getClass().getName(), e);
+    }
+  }
+
+  private Object read(Input in) {
+    byte tag = in.readByte();
+    switch(tag) {
+      case NULL:
+        return null;
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case BYTE:
+        return in.readByte();
+      case SHORT:
+        return in.readShort();
+      case CHAR:
+        return (char) in.readShort();
+      case INT:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case FLOAT:
+        return Float.intBitsToFloat(in.readInt());
+      case DOUBLE:
+        return Double.longBitsToDouble(in.readLong());
+      case STRING:
+        return in.readString();
+      case BYTE_ARRAY:
+        return in.readBytes(in.readInt());
+      case INT_ARRAY: {
+        int[] array = new int[in.readInt()];
+        for(int i = 0; i < array.length; i++) {
+          array[i] = in.readInt();
+        }
+        return array;
+      }
+      case LONG_ARRAY: {
+        long[] array = new long[in.readInt()];
+        for(int i = 0; i < array.length; i++) {
+          array[i] = in.readLong();
+        }
+        return array;
+      }
+      case DOUBLE_ARRAY: {
+        double[] array = new double[in.readInt()];
+        for(int i = 0; i < array.length; i++) {
+          array[i] = Double.longBitsToDouble(in.readLong());
+        }
+        return array;
+      }
+      case OBJECT_ARRAY:
+      case STRING_ARRAY: {
+        int length = in.readInt();
+        Object[] array = tag == OBJECT_ARRAY ? new Object[length] : new String[length];
+        for(int i = 0; i < length; i++) {
+          array[i] = read(in);
+        }
+        return array;
+      }
+      case ARRAY_LIST:
+        return readCollection(in, new ArrayList<>(in.peekInt()));
+      case HASH_SET:
+        return readCollection(in, new HashSet<>(capacity(in.peekInt())));
+      case LINKED_HASH_SET:
+        return readCollection(in, new LinkedHashSet<>(capacity(in.peekInt())));
+      case HASH_MAP:
+      case LINKED_HASH_MAP: {
+        int size = in.readInt();
+        Map<Object, Object> map = tag == HASH_MAP ? new HashMap<>(capacity(size)) : new LinkedHashMap<>(capacity(size));
+        for(int i = 0; i < size; i++) {
+          map.put(read(in), read(in));
+        }
+        return map;
+      }
+      case SHARED_REF: {
+        int offset = in.readInt();
+        int length = in.readInt();
+        return offset < 0 ? new SharedRef(in.readBytes(length)) : new SharedRef(offset, length, in.readByte() == TRUE);
+      }
+      case REGISTERED:
+        return readRegistered(in, in.readInt());
+      case SERIALIZED:
+        return Serializer.deserializeObject(new ByteArrayInputStream(in.readBytes(in.readInt())));
+      default:
+        throw new IllegalStateException("Unknown tag " + tag);
+    }
+  }
+
+  private Collection<Object> readCollection(Input in, Collection<Object> collection) {
+    int size = in.readInt();
+    for(int i = 0; i < size; i++) {
+      collection.add(read(in));
+    }
+    return collection;
+  }
+
+  private Object readRegistered(Input in, int id) {
+    if(id >= registered.size()) {
+      throw new IllegalStateException("Unknown class id " + id + ", classes must be registered on both sides");
+    }
+    Class<?> type = registered.get(id);
+    if(type.isEnum()) {
+      return type.getEnumConstants()[in.readInt()];
+    }
+    try {
+      Object value = OS.memory().allocateInstance(type);
+      for(Field field : fields.get(type)) {
+        Class<?> fieldType = field.getType();
+        if(fieldType == int.class) {
+          field.setInt(value, in.readInt());
+        } else if(fieldType == long.class) {
+          field.setLong(value, in.readLong());
+        } else if(fieldType == boolean.class) {
+          field.setBoolean(value, in.readByte() == TRUE);
+        } else if(fieldType == double.class) {
+          field.setDouble(value, Double.longBitsToDouble(in.readLong()));
+        } else if(fieldType == float.class) {
+          field.setFloat(value, Float.intBitsToFloat(in.readInt()));
+        } else if(fieldType == byte.class) {
+          field.setByte(value, in.readByte());
+        } else if(fieldType == short.class) {
+          field.setShort(value, in.readShort());
+        } else if(fieldType == char.class) {
+          field.setChar(value, (char) in.readShort());
+        } else {
+          field.set(value, read(in));
+        }
+      }
+      return value;
+    } catch(InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException("Could not decode " + type.getName(), e);
+    }
+  }
+
+  private static int capacity(int size) {
+    return Math.max(16, (int) (size / 0.75f) + 1);
+  }
+
+  /**
+   * The instance fields of {@code type} and its superclasses that Java serialization would write, superclass fields
+   * first and then by name, so both sides agree on the order.
+   */
+  private static Field[] fieldsOf(Class<?> type) {
+    List<Field> all = new ArrayList<>();
+    List<Class<?>> hierarchy = new ArrayList<>();
+    for(Class<?> cls = type; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+      hierarchy.add(0, cls);
+    }
+    for(Class<?> cls : hierarchy) {
+      Field[] declared = cls.getDeclaredFields();
+      Arrays.sort(declared, Comparator.comparing(Field::getName));
+      for(Field field : declared) {
+        if((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0) {
+          field.setAccessible(true);
+          all.add(field);
+        }
+      }
+    }
+    return all.toArray(new Field[0]);
+  }
+
+  private static class Input {
+    private byte[] buffer;
+    private int position;
+
+    Input reset(byte[] buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+      return this;
+    }
+
+    byte readByte() {
+      return buffer[position++];
+    }
+
+    short readShort() {
+      return (short) ((buffer[position++] & 0xFF) << 8 | buffer[position++] & 0xFF);
+    }
+
+    int readInt() {
+      int value = peekInt();
+      position += 4;
+      return value;
+    }
+
+    /**
+     * The next int, without moving past it.
+     */
+    int peekInt() {
+      return (buffer[position] & 0xFF) << 24 | (buffer[position + 1] & 0xFF) << 16
+          | (buffer[position + 2] & 0xFF) << 8 | buffer[position + 3] & 0xFF;
+    }
+
+    long readLong() {
+      return (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reads what {@link EncodeBuffer#writeUtf8} wrote. The JDK's UTF-8 decoder would turn an unpaired surrogate into
+     * U+FFFD, so this decodes by hand.
+     */
+    String readString() {
+      int end = readInt() + position;
+      char[] chars = new char[end - position];
+      int count = 0;
+      while(position < end) {
+        int b = buffer[position++];
+        if(b >= 0) {
+          chars[count++] = (char) b;
+        } else if((b & 0xE0) == 0xC0) {
+          chars[count++] = (char) ((b & 0x1F) << 6 | buffer[position++] & 0x3F);
+        } else if((b & 0xF0) == 0xE0) {
+          chars[count++] = (char) ((b & 0x0F) << 12 | (buffer[position++] & 0x3F) << 6 | buffer[position++] & 0x3F);
+        } else {
+          int codePoint = (b & 0x07) << 18 | (buffer[position++] & 0x3F) << 12 | (buffer[position++] & 0x3F) << 6
+              | buffer[position++] & 0x3F;
+          chars[count++] = Character.highSurrogate(codePoint);
+          chars[count++] = Character.lowSurrogate(codePoint);
+        }
+      }
+      return new String(chars, 0, count);
+    }
+
+    byte[] readBytes(int length) {
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+  }
+}
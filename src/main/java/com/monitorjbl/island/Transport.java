@@ -0,0 +1,44 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.bytes.Bytes;
+
+/**
+ * Carries frames of bytes one way to the other side of a bridge and the other way back. The bridge's sender thread is
+ * the only one writing and its receiver thread the only one reading, so each direction only ever has one thread on
+ * this end. Pick one with {@link TransportType}.
+ */
+interface Transport extends AutoCloseable {
+  /**
+   * Starts the next outgoing frame and returns the bytes to encode it into, positioned for writing.
+   */
+  Bytes<?> beginWrite();
+
+  /**
+   * Tries to hand the frame started by {@link #beginWrite()} to the other side. Returns false if it can't take it
+   * yet, for instance because it isn't listening or its buffer is full; the frame is kept and the sender calls this
+   * again after backing off. Throws if the frame is lost, in which case the calls in it are failed.
+   */
+  boolean endWrite();
+
+  /**
+   * The largest frame, in bytes, that {@link #endWrite()} can ever take. The sender starts a new frame rather than
+   * grow one past it.
+   */
+  default long maxFrameSize() {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the next incoming frame positioned for reading, or null if nothing has arrived. A frame must be finished
+   * with {@link #endRead()} before the next one is read.
+   */
+  Bytes<?> beginRead();
+
+  void endRead();
+
+  /**
+   * Releases both directions. Only called once the sender and receiver threads have stopped.
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,50 @@
+package com.monitorjbl.island;
+
+import net.openhft.chronicle.queue.RollCycle;
+
+import java.io.File;
+
+/**
+ * How calls and responses travel between parent and child. Both sides of an island always use the same one.
+ */
+public enum TransportType {
+  /**
+   * A pair of Chronicle queues. Every message is persisted to the queue files, which roll over and are deleted once
+   * read; the most forgiving option and the default.
+   */
+  CHRONICLE {
+    @Override
+    Transport open(File txPath, File rxPath, RollCycle rollCycle) {
+      return new ChronicleTransport(txPath, rxPath, rollCycle);
+    }
+  },
+
+  /**
+   * A pair of socket connections: Unix domain sockets on Java 16 and later, loopback TCP before that. Nothing but the
+   * socket or port file touches the disk. A Unix domain socket lives under the queue base path, which then has to be
+   * short enough for a socket address (about 100 characters).
+   */
+  SOCKET {
+    @Override
+    Transport open(File txPath, File rxPath, RollCycle rollCycle) {
+      return new SocketTransport(txPath, rxPath);
+    }
+  },
+
+  /**
+   * A pair of single-producer, single-consumer ring buffers in memory-mapped files. Lowest latency; a frame has to fit
+   * in the ring, so large values should go through shared memory (the default for anything over its threshold).
+   */
+  RING {
+    @Override
+    Transport open(File txPath, File rxPath, RollCycle rollCycle) {
+      return new RingTransport(txPath, rxPath, RingTransport.DEFAULT_CAPACITY);
+    }
+  };
+
+  /**
+   * Opens this side's end of the transport. Frames written go to {@code txPath}, frames read come from
+   * {@code rxPath}; the other process opens the same two paths the other way around.
+   */
+  abstract Transport open(File txPath, File rxPath, RollCycle rollCycle);
+}
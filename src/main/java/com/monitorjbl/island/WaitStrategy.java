@@ -0,0 +1,97 @@
+package com.monitorjbl.island;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Controls what the bridge's sender and receiver threads do when there is no work for them. Each strategy is handed
+ * the number of consecutive empty polls so it can escalate from spinning to yielding to parking.
+ */
+public enum WaitStrategy {
+  /**
+   * Never gives up the CPU. Picks up work soonest when each bridge thread has a core to itself, but keeps that core
+   * busy even when the island is idle, and competes with the caller when there are not enough cores.
+   */
+  BUSY_SPIN {
+    @Override
+    void pause(int idleCount) { }
+  },
+
+  /**
+   * Spins briefly and then yields to other runnable threads. Still close to a full core per thread while idle.
+   */
+  YIELDING {
+    @Override
+    void pause(int idleCount) {
+      if(idleCount > SPIN_LIMIT) {
+        Thread.yield();
+      }
+    }
+  },
+
+  /**
+   * Spins, then yields, then parks for exponentially longer periods up to {@link #MAX_PARK_NANOS}. Busy islands rarely
+   * get as far as parking while idle ones settle down to roughly one wakeup per millisecond.
+   */
+  BACKOFF {
+    @Override
+    void pause(int idleCount) {
+      if(idleCount > SPIN_LIMIT + YIELD_LIMIT) {
+        int shift = Math.min(idleCount - SPIN_LIMIT - YIELD_LIMIT, 10);
+        LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << shift, MAX_PARK_NANOS));
+      } else if(idleCount > SPIN_LIMIT) {
+        Thread.yield();
+      }
+    }
+  },
+
+  /**
+   * Parks the sender until {@code send} or {@code reply} enqueues something. The receiver cannot be woken from the
+   * other process, so it falls back to {@link #BACKOFF}.
+   */
+  BLOCKING {
+    @Override
+    void pause(int idleCount) {
+      BACKOFF.pause(idleCount);
+    }
+
+    @Override
+    void pauseSender(int idleCount) {
+      LockSupport.parkNanos(MAX_PARK_NANOS);
+    }
+
+    @Override
+    boolean signalsSender() {
+      return true;
+    }
+  };
+
+  static final int SPIN_LIMIT = 100;
+  static final int YIELD_LIMIT = 100;
+  static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+  static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  static final int MAX_IDLE_COUNT = SPIN_LIMIT + YIELD_LIMIT + 64;
+
+  abstract void pause(int idleCount);
+
+  void pauseSender(int idleCount) {
+    pause(idleCount);
+  }
+
+  /**
+   * Waits once and returns the idle count to use on the next empty poll.
+   */
+  int idle(int idleCount) {
+    pause(idleCount);
+    return Math.min(idleCount + 1, MAX_IDLE_COUNT);
+  }
+
+  int idleSender(int idleCount) {
+    pauseSender(idleCount);
+    return Math.min(idleCount + 1, MAX_IDLE_COUNT);
+  }
+
+  boolean signalsSender() {
+    return false;
+  }
+}
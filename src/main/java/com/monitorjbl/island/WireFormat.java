@@ -0,0 +1,244 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPC;
+import com.monitorjbl.island.domain.RPCMessage;
+import com.monitorjbl.island.domain.RPCResponse;
+import com.monitorjbl.island.domain.RPCType;
+import net.openhft.chronicle.bytes.Bytes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Binary layout used for every {@link RPC} that crosses the bridge. Each RPC starts with a fixed header:
+ * <pre>
+ *   byte  kind      (RPCType constant for messages, RESPONSE for replies)
+ *   byte  flags     (FLAG_ERROR, FLAG_MORE, FLAG_STREAM, FLAG_TIMED, FLAG_ONE_WAY, and a message's lane in the
+ *                    top bits)
+ *   long  correlation id
+ *   int   method id (messages only)
+ * </pre>
+ * Registrations follow it with the class name, invocations with a count of length-prefixed argument blobs (plus the
+ * initial credit and chunk size when FLAG_STREAM is set), cache invalidations with the same count of argument blobs,
+ * stream credits with the credit count, failed one-way invocations with the error, and responses with a single
+ * length-prefixed value encoded by the island's {@link Codec}. A length of -1 encodes null. FLAG_MORE marks every
+ * chunk of a streamed result but the last, and FLAG_TIMED responses end with the child's queue and execution times in
+ * nanoseconds.
+ * <p>
+ * The bridge writes RPCs in frames: each queue document holds an int count followed by that many RPCs, so a sender
+ * that wakes up to a backlog drains it into as few documents as the transport's frame size allows.
+ */
+public class WireFormat {
+  static final byte RESPONSE = 0;
+  static final byte FLAG_ERROR = 1;
+  static final byte FLAG_MORE = 2;
+  static final byte FLAG_STREAM = 4;
+  static final byte FLAG_TIMED = 8;
+  static final byte FLAG_ONE_WAY = 16;
+  private static final int LANE_SHIFT = 5;
+  private static final int MAX_WRITE = 64 * 1024;
+  private static final int MAX_RETAINED = 1024 * 1024;
+  private static final ThreadLocal<EncodeBuffer> BUFFER = ThreadLocal.withInitial(() -> new EncodeBuffer(1024));
+
+  public static void write(RPC rpc, Bytes<?> bytes, Codec codec) {
+    if(rpc instanceof RPCResponse) {
+      RPCResponse response = (RPCResponse) rpc;
+      boolean timed = response.getQueueNanos() != 0 || response.getExecutionNanos() != 0;
+      byte flags = (byte) ((response.isError() ? FLAG_ERROR : 0) | (response.isMore() ? FLAG_MORE : 0)
+          | (timed ? FLAG_TIMED : 0));
+      writeHeader(bytes, RESPONSE, flags, response.getId());
+      writeValue(bytes, response.getResponse(), codec);
+      if(timed) {
+        bytes.writeLong(response.getQueueNanos());
+        bytes.writeLong(response.getExecutionNanos());
+      }
+    } else {
+      RPCMessage message = (RPCMessage) rpc;
+      byte flags = (byte) ((message.isStreaming() ? FLAG_STREAM : 0) | (message.isOneWay() ? FLAG_ONE_WAY : 0)
+          | message.getLane() << LANE_SHIFT);
+      writeHeader(bytes, message.getType(), flags, message.getId());
+      bytes.writeInt(message.getMethodId());
+      if(message.getType() == RPCType.REGISTER) {
+        writeString(bytes, message.getClassName());
+      } else if(message.getType() == RPCType.METHOD_INVOCATION || message.getType() == RPCType.INVALIDATE) {
+        if(message.getEncodedParameters() != null) {
+          bytes.writeInt(message.getEncodedCount());
+          writeBytes(bytes, message.getEncodedParameters(), message.getEncodedLength());
+        } else {
+          List<byte[]> params = message.getMethodParameters();
+          bytes.writeInt(params.size());
+          for(byte[] param : params) {
+            writeBlob(bytes, param);
+          }
+        }
+        if(message.isStreaming()) {
+          bytes.writeInt(message.getCredits());
+          bytes.writeInt(message.getChunkSize());
+        }
+      } else if(message.getType() == RPCType.STREAM_CREDIT) {
+        bytes.writeInt(message.getCredits());
+      } else if(message.getType() == RPCType.ONE_WAY_FAILED) {
+        writeString(bytes, message.getError());
+      }
+    }
+  }
+
+  public static RPC read(Bytes<?> bytes, Codec codec) {
+    return read(bytes, codec, RPCMessage::new, new RPCResponse());
+  }
+
+  /**
+   * Reads the next RPC into {@code response} if it is a response, or else into a message from {@code messages}, so a
+   * receiver that reuses them creates nothing per RPC. Every field the RPC carries is overwritten. An invocation's
+   * arguments are copied as they are framed into the message's {@linkplain RPCMessage#getEncodedParameters() encoded
+   * parameters}, reusing its array if it is big enough, and a response's value is decoded through a buffer kept by
+   * the reading thread.
+   */
+  static RPC read(Bytes<?> bytes, Codec codec, Supplier<? extends RPCMessage> messages, RPCResponse response) {
+    byte kind = bytes.readByte();
+    byte flags = bytes.readByte();
+    long id = bytes.readLong();
+
+    if(kind == RESPONSE) {
+      response.setId(id);
+      response.setError((flags & FLAG_ERROR) != 0);
+      response.setMore((flags & FLAG_MORE) != 0);
+      response.setResponse(readValue(bytes, codec));
+      boolean timed = (flags & FLAG_TIMED) != 0;
+      response.setQueueNanos(timed ? bytes.readLong() : 0);
+      response.setExecutionNanos(timed ? bytes.readLong() : 0);
+      return response;
+    } else {
+      RPCMessage message = messages.get();
+      message.setId(id);
+      message.setType(kind);
+      message.setOneWay((flags & FLAG_ONE_WAY) != 0);
+      message.setLane((byte) ((flags & 0xFF) >>> LANE_SHIFT));
+      message.setMethodId(bytes.readInt());
+      message.setClassName(null);
+      message.setError(null);
+      message.setCredits(0);
+      message.setChunkSize(0);
+      if(kind == RPCType.REGISTER) {
+        message.setClassName(bytes.readUtf8());
+      } else if(kind == RPCType.METHOD_INVOCATION) {
+        readEncoded(bytes, bytes.readInt(), message);
+        if((flags & FLAG_STREAM) != 0) {
+          message.setCredits(bytes.readInt());
+          message.setChunkSize(bytes.readInt());
+        }
+      } else if(kind == RPCType.INVALIDATE) {
+        int count = bytes.readInt();
+        List<byte[]> params = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+          params.add(readBlob(bytes));
+        }
+        message.setMethodParameters(params);
+      } else if(kind == RPCType.STREAM_CREDIT) {
+        message.setCredits(bytes.readInt());
+      } else if(kind == RPCType.ONE_WAY_FAILED) {
+        message.setError(bytes.readUtf8());
+      }
+      return message;
+    }
+  }
+
+  private static void writeHeader(Bytes<?> bytes, byte kind, byte flags, long id) {
+    bytes.writeByte(kind);
+    bytes.writeByte(flags);
+    bytes.writeLong(id);
+  }
+
+  private static void writeString(Bytes<?> bytes, String str) {
+    //the String overload of writeUtf8 does not accept null
+    bytes.writeUtf8((CharSequence) str);
+  }
+
+  /**
+   * Encodes a value through a buffer kept by the writing thread, so sending a response doesn't create an array for it.
+   * The reading thread decodes them through one of its own the same way.
+   */
+  private static void writeValue(Bytes<?> bytes, Object value, Codec codec) {
+    if(value == null) {
+      bytes.writeInt(-1);
+      return;
+    }
+    EncodeBuffer buffer = BUFFER.get();
+    buffer.reset();
+    try {
+      codec.encode(value, buffer);
+    } catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    bytes.writeInt(buffer.size());
+    writeBytes(bytes, buffer.array(), buffer.size());
+    if(buffer.array().length > MAX_RETAINED) {
+      BUFFER.remove();
+    }
+  }
+
+  private static Object readValue(Bytes<?> bytes, Codec codec) {
+    int length = bytes.readInt();
+    if(length < 0) {
+      return null;
+    }
+    EncodeBuffer buffer = BUFFER.get();
+    byte[] array = buffer.reserve(length);
+    bytes.read(array, 0, length);
+    Object value = codec.decode(array, 0, length);
+    if(array.length > MAX_RETAINED) {
+      BUFFER.remove();
+    }
+    return value;
+  }
+
+  /**
+   * Copies {@code count} argument blobs, length prefixes and all, into the message's encoded parameters.
+   */
+  private static void readEncoded(Bytes<?> bytes, int count, RPCMessage message) {
+    long start = bytes.readPosition();
+    for(int i = 0; i < count; i++) {
+      int length = bytes.readInt();
+      if(length > 0) {
+        bytes.readSkip(length);
+      }
+    }
+    int length = (int) (bytes.readPosition() - start);
+    byte[] encoded = message.getEncodedParameters();
+    if(encoded == null || encoded.length < length) {
+      encoded = new byte[length];
+    }
+    bytes.readPosition(start);
+    bytes.read(encoded, 0, length);
+    message.setEncodedParameters(encoded, length, count);
+  }
+
+  private static void writeBlob(Bytes<?> bytes, byte[] blob) {
+    if(blob == null) {
+      bytes.writeInt(-1);
+    } else {
+      bytes.writeInt(blob.length);
+      writeBytes(bytes, blob, blob.length);
+    }
+  }
+
+  private static void writeBytes(Bytes<?> bytes, byte[] data, int length) {
+    //a single bulk write past the end of the mapped chunk crashes the JVM, so large blobs are written in slices
+    for(int offset = 0; offset < length; offset += MAX_WRITE) {
+      bytes.write(data, offset, Math.min(MAX_WRITE, length - offset));
+    }
+  }
+
+  private static byte[] readBlob(Bytes<?> bytes) {
+    int length = bytes.readInt();
+    if(length < 0) {
+      return null;
+    }
+    byte[] blob = new byte[length];
+    bytes.read(blob);
+    return blob;
+  }
+}
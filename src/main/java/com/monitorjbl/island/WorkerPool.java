@@ -0,0 +1,212 @@
+package com.monitorjbl.island;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed number of threads sharing one queue, like {@link java.util.concurrent.Executors#newFixedThreadPool}, except
+ * that handing a task over creates nothing. The queue is a ring of slots with sequence numbers like
+ * {@link SendQueue}'s, but with any number of consumers, and an idle thread parks in a slot of its own for the next
+ * task's submitter to wake instead of waiting on a lock condition, whose wait nodes are allocated every time.
+ * <p>
+ * Tasks submitted while the ring is full, and after that until the backlog has been taken, go to a linked overflow
+ * queue, so only an executor that has fallen far behind allocates. The pool counts the tasks it runs itself, so they
+ * don't have to be wrapped to be counted.
+ */
+class WorkerPool extends AbstractExecutorService {
+  private static final Logger log = LoggerFactory.getLogger(WorkerPool.class);
+  private static final int CAPACITY_PER_THREAD = 1024;
+
+  private final Object[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private final Queue<Runnable> overflow = new ConcurrentLinkedQueue<>();
+  private final Thread[] workers;
+  private final AtomicReferenceArray<Thread> idle;
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicLong completed = new AtomicLong();
+  private final CountDownLatch terminated;
+  private volatile boolean shutdown;
+
+  WorkerPool(String name, int threads) {
+    int size = Integer.highestOneBit(Math.max(2, threads * CAPACITY_PER_THREAD - 1)) << 1;
+    this.slots = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for(int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    this.workers = new Thread[threads];
+    this.idle = new AtomicReferenceArray<>(threads);
+    this.terminated = new CountDownLatch(threads);
+    for(int i = 0; i < threads; i++) {
+      int index = i;
+      workers[i] = new Thread(() -> work(index), "island-" + name + "-" + (i + 1));
+      workers[i].start();
+    }
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    if(shutdown) {
+      throw new RejectedExecutionException("Executor has been shut down");
+    }
+    //once tasks have overflowed, later ones queue up behind them rather than overtaking them through the ring
+    if(!overflow.isEmpty() || !offer(task)) {
+      overflow.add(task);
+    }
+    wakeOne();
+  }
+
+  /**
+   * Number of tasks running right now.
+   */
+  int active() {
+    return active.get();
+  }
+
+  /**
+   * Number of tasks that have finished running, normally or not.
+   */
+  long completed() {
+    return completed.get();
+  }
+
+  private void work(int index) {
+    Thread self = Thread.currentThread();
+    while(true) {
+      Runnable task = poll();
+      if(task == null) {
+        if(shutdown) {
+          break;
+        }
+        //registers before looking once more, so a submitter either sees this thread or its task is seen here
+        idle.set(index, self);
+        task = poll();
+        Thread.interrupted();
+        if(task == null && !shutdown) {
+          LockSupport.park(this);
+        }
+        if(!idle.compareAndSet(index, self, null) && task != null) {
+          //a submitter woke this thread, which had found a task already, so another one has to take the new task
+          wakeOne();
+        }
+        if(task == null) {
+          continue;
+        }
+      }
+      run(task);
+    }
+    terminated.countDown();
+  }
+
+  private void run(Runnable task) {
+    active.incrementAndGet();
+    try {
+      task.run();
+    } catch(Throwable e) {
+      log.error("Task failed", e);
+    } finally {
+      active.decrementAndGet();
+      completed.incrementAndGet();
+    }
+  }
+
+  private void wakeOne() {
+    for(int i = 0; i < workers.length; i++) {
+      Thread worker = idle.get(i);
+      if(worker != null && idle.compareAndSet(i, worker, null)) {
+        LockSupport.unpark(worker);
+        return;
+      }
+    }
+  }
+
+  private boolean offer(Runnable task) {
+    while(true) {
+      long position = tail.get();
+      int slot = (int) position & mask;
+      long sequence = sequences.get(slot);
+      if(sequence == position) {
+        if(tail.compareAndSet(position, position + 1)) {
+          slots[slot] = task;
+          //a full write, so it can't be reordered after the look for an idle thread that follows it
+          sequences.set(slot, position + 1);
+          return true;
+        }
+      } else if(sequence < position) {
+        return false;
+      }
+    }
+  }
+
+  private Runnable poll() {
+    while(true) {
+      long position = head.get();
+      int slot = (int) position & mask;
+      long sequence = sequences.get(slot);
+      if(sequence == position + 1) {
+        if(head.compareAndSet(position, position + 1)) {
+          Runnable task = (Runnable) slots[slot];
+          slots[slot] = null;
+          sequences.lazySet(slot, position + mask + 1);
+          return task;
+        }
+      } else if(sequence < position + 1) {
+        return overflow.poll();
+      }
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    shutdown = true;
+    for(Thread worker : workers) {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    List<Runnable> pending = new ArrayList<>();
+    for(Runnable task = poll(); task != null; task = poll()) {
+      pending.add(task);
+    }
+    for(Thread worker : workers) {
+      worker.interrupt();
+    }
+    return pending;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+}
@@ -1,9 +1,10 @@
 package com.monitorjbl.island.domain;
 
-import com.fasterxml.jackson.annotation.JsonTypeInfo;
-import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
-
-@JsonTypeInfo(use = Id.CLASS, include = JsonTypeInfo.As.PROPERTY)
 public interface RPC {
-  String getId();
+  long getId();
+
+  /**
+   * The send queue lane, 0 for control traffic.
+   */
+  byte getLane();
 }
@@ -3,24 +3,45 @@ package com.monitorjbl.island.domain;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
 
 public class RPCMessage implements Serializable, RPC {
-  private final String id = UUID.randomUUID().toString();
-  private String type;
+  private long id;
+  private byte type;
   private String className;
-  private String methodName;
+  private int methodId;
   private List<byte[]> methodParameters = Collections.emptyList();
+  private int credits;
+  private int chunkSize;
+  private boolean oneWay;
+  private String error;
+  private byte lane;
 
-  public String getId() {
+  //arguments already framed the way they go on the queue, written instead of methodParameters when set
+  private transient byte[] encodedParameters;
+  private transient int encodedLength;
+  private transient int encodedCount;
+  //gives back whatever was set aside for the arguments if the message is never sent
+  private transient Runnable onDiscard;
+
+  //local timestamps for metrics, never sent
+  private transient long startNanos;
+  private transient long enqueuedNanos;
+  private transient long sentNanos;
+  private transient long receivedNanos;
+
+  public long getId() {
     return id;
   }
 
-  public String getType() {
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public byte getType() {
     return type;
   }
 
-  public void setType(String type) {
+  public void setType(byte type) {
     this.type = type;
   }
 
@@ -32,12 +53,12 @@ public class RPCMessage implements Serializable, RPC {
     this.className = className;
   }
 
-  public String getMethodName() {
-    return methodName;
+  public int getMethodId() {
+    return methodId;
   }
 
-  public void setMethodName(String methodName) {
-    this.methodName = methodName;
+  public void setMethodId(int methodId) {
+    this.methodId = methodId;
   }
 
   public List<byte[]> getMethodParameters() {
@@ -48,18 +69,206 @@ public class RPCMessage implements Serializable, RPC {
     this.methodParameters = methodParameters;
   }
 
+  /**
+   * Arguments that have already been written as a count of length-prefixed blobs, the first {@code length} bytes of
+   * {@code encoded}. The array is written as-is, so it must not change until the message has been sent.
+   */
+  public void setEncodedParameters(byte[] encoded, int length, int count) {
+    this.encodedParameters = encoded;
+    this.encodedLength = length;
+    this.encodedCount = count;
+  }
+
+  public byte[] getEncodedParameters() {
+    return encodedParameters;
+  }
+
+  public int getEncodedLength() {
+    return encodedLength;
+  }
+
+  public int getEncodedCount() {
+    return encodedCount;
+  }
+
+  /**
+   * Sets what {@link #discard()} runs. A message that is sent is left to the receiver to clean up after instead.
+   */
+  public void setOnDiscard(Runnable onDiscard) {
+    this.onDiscard = onDiscard;
+  }
+
+  /**
+   * Called when the message is dropped without being sent, for instance because it was rejected. Runs the discard
+   * action at most once.
+   */
+  public void discard() {
+    Runnable action = onDiscard;
+    onDiscard = null;
+    if(action != null) {
+      action.run();
+    }
+  }
+
+  /**
+   * Which of the sender's queues this waits in: 0 for control traffic, otherwise the lane of the call's priority class.
+   */
+  public byte getLane() {
+    return lane;
+  }
+
+  public void setLane(byte lane) {
+    this.lane = lane;
+  }
+
+  public int getCredits() {
+    return credits;
+  }
+
+  public void setCredits(int credits) {
+    this.credits = credits;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Whether the invocation is sent without waiting for a response. The child only answers it if it fails.
+   */
+  public boolean isOneWay() {
+    return oneWay;
+  }
+
+  public void setOneWay(boolean oneWay) {
+    this.oneWay = oneWay;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  /**
+   * When the proxy started handling the call, before its arguments were serialized.
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  public void setStartNanos(long startNanos) {
+    this.startNanos = startNanos;
+  }
+
+  /**
+   * When the message was handed to the bridge's send queue.
+   */
+  public long getEnqueuedNanos() {
+    return enqueuedNanos;
+  }
+
+  public void setEnqueuedNanos(long enqueuedNanos) {
+    this.enqueuedNanos = enqueuedNanos;
+  }
+
+  /**
+   * When the sender thread wrote the message to the queue.
+   */
+  public long getSentNanos() {
+    return sentNanos;
+  }
+
+  public void setSentNanos(long sentNanos) {
+    this.sentNanos = sentNanos;
+  }
+
+  /**
+   * When the receiver thread read the message from the queue.
+   */
+  public long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  public void setReceivedNanos(long receivedNanos) {
+    this.receivedNanos = receivedNanos;
+  }
+
+  public boolean isStreaming() {
+    return type == RPCType.METHOD_INVOCATION && credits > 0;
+  }
+
   public static RPCMessage ping() {
     RPCMessage msg = new RPCMessage();
     msg.setType(RPCType.PING);
     return msg;
   }
 
+  /**
+   * Answered by the child once its entry has started up.
+   */
+  public static RPCMessage ready() {
+    RPCMessage msg = new RPCMessage();
+    msg.setType(RPCType.READY);
+    return msg;
+  }
+
   public static RPCMessage shutdown() {
     RPCMessage msg = new RPCMessage();
     msg.setType(RPCType.SHUTDOWN);
     return msg;
   }
 
+  public static RPCMessage register(String className, int baseId) {
+    RPCMessage msg = new RPCMessage();
+    msg.setType(RPCType.REGISTER);
+    msg.setClassName(className);
+    msg.setMethodId(baseId);
+    return msg;
+  }
+
+  /**
+   * Grants a streaming call more chunks. A negative count cancels the stream. Sent in the stream's own lane so a
+   * cancellation can't overtake the invocation it cancels.
+   */
+  public static RPCMessage streamCredit(long streamId, int credits, byte lane) {
+    RPCMessage msg = new RPCMessage();
+    msg.setLane(lane);
+    msg.setType(RPCType.STREAM_CREDIT);
+    msg.setId(streamId);
+    msg.setCredits(credits);
+    return msg;
+  }
+
+  /**
+   * Sent by the child when a one-way invocation fails, since there is no response to carry the error.
+   */
+  public static RPCMessage oneWayFailed(int methodId, String error) {
+    RPCMessage msg = new RPCMessage();
+    msg.setType(RPCType.ONE_WAY_FAILED);
+    msg.setMethodId(methodId);
+    msg.setError(error);
+    return msg;
+  }
+
+  /**
+   * Sent by the child to drop cached results: of one method when {@code methodId} is not negative, and only the one
+   * for the given serialized arguments when there are any.
+   */
+  public static RPCMessage invalidate(int methodId, List<byte[]> args) {
+    RPCMessage msg = new RPCMessage();
+    msg.setType(RPCType.INVALIDATE);
+    msg.setMethodId(methodId);
+    msg.setMethodParameters(args);
+    return msg;
+  }
+
   public static RPCMessage invocation() {
     RPCMessage msg = new RPCMessage();
     msg.setType(RPCType.METHOD_INVOCATION);
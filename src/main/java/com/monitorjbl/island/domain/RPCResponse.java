@@ -3,23 +3,35 @@ package com.monitorjbl.island.domain;
 import java.io.Serializable;
 
 public class RPCResponse implements Serializable, RPC {
-  private String id;
+  private long id;
   private boolean error;
   private Object response;
+  private boolean more;
+  private long queueNanos;
+  private long executionNanos;
+  private transient byte lane;
+  private transient long receivedNanos;
+  //hands the response back to whoever reuses it once the sender is done with it
+  private transient Runnable onRelease;
 
   public RPCResponse() { }
 
-  public RPCResponse(String id, boolean error, Object response) {
+  public RPCResponse(long id, boolean error, Object response) {
+    this(id, error, response, false);
+  }
+
+  public RPCResponse(long id, boolean error, Object response, boolean more) {
     this.id = id;
     this.error = error;
     this.response = response;
+    this.more = more;
   }
 
-  public String getId() {
+  public long getId() {
     return id;
   }
 
-  public void setId(String id) {
+  public void setId(long id) {
     this.id = id;
   }
 
@@ -38,4 +50,78 @@ public class RPCResponse implements Serializable, RPC {
   public void setResponse(Object response) {
     this.response = response;
   }
+
+  /**
+   * Which of the sender's queues this waits in: 0 for control traffic, otherwise the lane of the call's priority class.
+   */
+  public byte getLane() {
+    return lane;
+  }
+
+  public void setLane(byte lane) {
+    this.lane = lane;
+  }
+
+  /**
+   * True for every chunk of a streamed result except the last.
+   */
+  public boolean isMore() {
+    return more;
+  }
+
+  public void setMore(boolean more) {
+    this.more = more;
+  }
+
+  /**
+   * Time the invocation spent in the child's thread pool queue before it started running.
+   */
+  public long getQueueNanos() {
+    return queueNanos;
+  }
+
+  public void setQueueNanos(long queueNanos) {
+    this.queueNanos = queueNanos;
+  }
+
+  /**
+   * Time the child spent running the method, up to the returned stage completing for async methods.
+   */
+  public long getExecutionNanos() {
+    return executionNanos;
+  }
+
+  public void setExecutionNanos(long executionNanos) {
+    this.executionNanos = executionNanos;
+  }
+
+  /**
+   * When the receiver thread read the response from the queue. Local only, never sent.
+   */
+  public long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  public void setReceivedNanos(long receivedNanos) {
+    this.receivedNanos = receivedNanos;
+  }
+
+  /**
+   * Sets what {@link #release()} runs, so a response can be reused once it has been written.
+   */
+  public void setOnRelease(Runnable onRelease) {
+    this.onRelease = onRelease;
+  }
+
+  /**
+   * Called once the sender is done with the response, whether it was written or dropped. Runs the release action at
+   * most once.
+   */
+  public void release() {
+    Runnable action = onRelease;
+    onRelease = null;
+    if(action != null) {
+      action.run();
+    }
+  }
 }
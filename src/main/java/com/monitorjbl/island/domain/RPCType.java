@@ -1,7 +1,12 @@
 package com.monitorjbl.island.domain;
 
 public class RPCType {
-  public static final String METHOD_INVOCATION = "invocation";
-  public static final String SHUTDOWN = "shutdown";
-  public static final String PING = "ping";
+  public static final byte METHOD_INVOCATION = 1;
+  public static final byte SHUTDOWN = 2;
+  public static final byte PING = 3;
+  public static final byte REGISTER = 4;
+  public static final byte STREAM_CREDIT = 5;
+  public static final byte READY = 6;
+  public static final byte ONE_WAY_FAILED = 7;
+  public static final byte INVALIDATE = 8;
 }
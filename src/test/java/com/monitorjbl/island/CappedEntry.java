@@ -0,0 +1,8 @@
+package com.monitorjbl.island;
+
+public class CappedEntry extends TestEntry {
+  @Override
+  public int capacity() {
+    return 2;
+  }
+}
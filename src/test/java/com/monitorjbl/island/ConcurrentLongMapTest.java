@@ -0,0 +1,66 @@
+package com.monitorjbl.island;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConcurrentLongMapTest {
+
+  @Test
+  public void test() {
+    ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+    for(long i = 1; i <= 1000; i++) {
+      map.put(i, "v" + i);
+    }
+    assertEquals(1000, map.size());
+    for(long i = 1; i <= 1000; i += 2) {
+      assertEquals("v" + i, map.remove(i));
+    }
+    assertEquals(500, map.size());
+    for(long i = 1; i <= 1000; i++) {
+      assertEquals(i % 2 == 0 ? "v" + i : null, map.get(i));
+    }
+    assertNull(map.remove(1));
+  }
+
+  @Test
+  public void testClear() {
+    ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+    for(long i = 1; i <= 100; i++) {
+      map.put(i, "v" + i);
+    }
+    Set<String> cleared = new HashSet<>();
+    map.clear(cleared::add);
+    assertEquals(100, cleared.size());
+    assertEquals(0, map.size());
+    assertNull(map.get(50));
+  }
+
+  @Test
+  public void testMatchesHashMap() {
+    ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+    Map<Long, Long> expected = new HashMap<>();
+    Random random = new Random(42);
+    for(int i = 0; i < 100000; i++) {
+      long key = 1 + random.nextInt(2000);
+      if(random.nextBoolean()) {
+        map.put(key, (long) i);
+        expected.put(key, (long) i);
+      } else {
+        assertEquals(expected.remove(key), map.remove(key));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    for(long key = 1; key <= 2000; key++) {
+      assertEquals(expected.get(key), map.get(key));
+    }
+  }
+
+}
@@ -0,0 +1,8 @@
+package com.monitorjbl.island;
+
+public class ExitingEntry implements IslandEntry {
+  @Override
+  public void startup() {
+    System.exit(3);
+  }
+}
@@ -0,0 +1,8 @@
+package com.monitorjbl.island;
+
+public class FailingEntry implements IslandEntry {
+  @Override
+  public void startup() {
+    throw new IllegalStateException("Refusing to start");
+  }
+}
@@ -0,0 +1,40 @@
+package com.monitorjbl.island;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashRingTest {
+
+  @Test
+  public void testAddingNodeOnlyMovesItsShare() {
+    List<String> names = new ArrayList<>(Arrays.asList("child-0", "child-1", "child-2"));
+    HashRing<String> before = new HashRing<>(names, names);
+    names.add("child-3");
+    HashRing<String> after = new HashRing<>(names, names);
+
+    int moved = 0;
+    int[] counts = new int[4];
+    for(int i = 0; i < 10000; i++) {
+      String key = "tenant-" + i;
+      String owner = after.get(key);
+      counts[names.indexOf(owner)]++;
+      if(!owner.equals(before.get(key))) {
+        assertEquals("child-3", owner);
+        moved++;
+      }
+    }
+
+    //a quarter of the keys should move to the new node, give or take
+    assertTrue("moved " + moved, moved > 1500 && moved < 3500);
+    for(int count : counts) {
+      assertTrue("unbalanced " + Arrays.toString(counts), count > 1500 && count < 3500);
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCMessage;
+import com.monitorjbl.island.domain.RPCResponse;
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IPCBridgeTest {
+
+  @Test
+  public void testLanes() throws Exception {
+    CapturingTransport transport = new CapturingTransport();
+    IPCBridge bridge = new IPCBridge(transport, WaitStrategy.BACKOFF, 16, message -> { });
+    bridge.post(invocation(1, PriorityClass.BULK));
+    bridge.post(invocation(2, PriorityClass.NORMAL));
+    bridge.post(invocation(3, PriorityClass.HIGH));
+    bridge.post(invocation(4, PriorityClass.NORMAL));
+    bridge.post(RPCMessage.ping());
+    bridge.start();
+    try {
+      //the ping jumps the whole backlog, then the calls come out by priority class and in order within one
+      assertEquals(Arrays.asList(0, 3, 2, 4, 1), transport.firstFrame.get(5, TimeUnit.SECONDS));
+    } finally {
+      bridge.close();
+    }
+  }
+
+  @Test
+  public void testFrameLimit() throws Exception {
+    LimitedTransport transport = new LimitedTransport(256);
+    IPCBridge bridge = new IPCBridge(transport, WaitStrategy.BACKOFF, 16, message -> { });
+    List<CompletableFuture<Object>> sent = new ArrayList<>();
+    for(int i = 1; i <= 10; i++) {
+      RPCMessage message = invocation(i, PriorityClass.NORMAL);
+      message.setMethodParameters(Collections.singletonList(new byte[64]));
+      sent.add(bridge.send(message, RPCResponse::getResponse));
+    }
+    RPCMessage tooLarge = invocation(11, PriorityClass.NORMAL);
+    tooLarge.setMethodParameters(Collections.singletonList(new byte[1024]));
+    CompletableFuture<Object> lost = bridge.send(tooLarge, RPCResponse::getResponse);
+    bridge.start();
+    try {
+      //the calls that fit are split over several frames instead of overflowing one
+      List<Integer> methodIds = new ArrayList<>();
+      while(methodIds.size() < 10) {
+        List<Integer> frame = transport.frames.poll(5, TimeUnit.SECONDS);
+        assertTrue(frame.size() < 10);
+        methodIds.addAll(frame);
+      }
+      assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), methodIds);
+
+      //the one that can never fit fails rather than waiting for a response forever
+      try {
+        lost.get(5, TimeUnit.SECONDS);
+        fail("Expected the call to fail");
+      } catch(ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+      assertEquals(10, bridge.inFlight());
+      assertFalse(sent.stream().anyMatch(CompletableFuture::isDone));
+    } finally {
+      bridge.close();
+    }
+  }
+
+  private static RPCMessage invocation(int methodId, PriorityClass priority) {
+    RPCMessage message = RPCMessage.invocation();
+    message.setMethodId(methodId);
+    message.setLane(priority.lane());
+    return message;
+  }
+
+  /**
+   * Takes frames up to a size limit, like a ring, and hands back the method ids in each one.
+   */
+  private static class LimitedTransport implements Transport {
+    private final BlockingQueue<List<Integer>> frames = new LinkedBlockingQueue<>();
+    private final Bytes<?> bytes = Bytes.elasticByteBuffer();
+    private final int maxFrameSize;
+
+    LimitedTransport(int maxFrameSize) {
+      this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    public Bytes<?> beginWrite() {
+      bytes.clear();
+      return bytes;
+    }
+
+    @Override
+    public boolean endWrite() {
+      if(bytes.writePosition() > maxFrameSize) {
+        throw new IllegalStateException("Frame of " + bytes.writePosition() + " bytes is too large");
+      }
+      List<Integer> methodIds = new ArrayList<>();
+      int count = bytes.readInt();
+      for(int i = 0; i < count; i++) {
+        methodIds.add(((RPCMessage) WireFormat.read(bytes, new TaggedCodec())).getMethodId());
+      }
+      frames.add(methodIds);
+      return true;
+    }
+
+    @Override
+    public long maxFrameSize() {
+      return maxFrameSize;
+    }
+
+    @Override
+    public Bytes<?> beginRead() {
+      return null;
+    }
+
+    @Override
+    public void endRead() {
+    }
+
+    @Override
+    public void close() {
+      bytes.release();
+    }
+  }
+
+  /**
+   * Decodes the first frame written and hands back the method ids in it.
+   */
+  private static class CapturingTransport implements Transport {
+    private final CompletableFuture<List<Integer>> firstFrame = new CompletableFuture<>();
+    private final Bytes<?> bytes = Bytes.elasticByteBuffer();
+
+    @Override
+    public Bytes<?> beginWrite() {
+      bytes.clear();
+      return bytes;
+    }
+
+    @Override
+    public boolean endWrite() {
+      List<Integer> methodIds = new ArrayList<>();
+      int count = bytes.readInt();
+      for(int i = 0; i < count; i++) {
+        methodIds.add(((RPCMessage) WireFormat.read(bytes, new TaggedCodec())).getMethodId());
+      }
+      firstFrame.complete(methodIds);
+      return true;
+    }
+
+    @Override
+    public Bytes<?> beginRead() {
+      return null;
+    }
+
+    @Override
+    public void endRead() {
+    }
+
+    @Override
+    public void close() {
+      bytes.release();
+    }
+  }
+}
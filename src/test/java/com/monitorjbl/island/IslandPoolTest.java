@@ -0,0 +1,60 @@
+package com.monitorjbl.island;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IslandPoolTest {
+
+  @Test
+  public void test() throws Exception {
+    try(IslandPool pool = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/pool-queues")
+        .routingStrategy(RoutingStrategy.ROUND_ROBIN)
+        .createPoolAndStartup(2)) {
+
+      TestIFace iface = pool.generateProxy(TestIFace.class);
+      for(int i = 0; i < 10; i++) {
+        assertEquals(i + 1, iface.addOne(i));
+      }
+
+      pool.resize(3);
+      assertEquals(3, pool.size());
+      for(int i = 0; i < 10; i++) {
+        assertEquals(i + 1, iface.addOne(i));
+      }
+
+      pool.resize(1);
+      assertEquals(1, pool.size());
+      for(int i = 0; i < 10; i++) {
+        assertEquals("something", iface.doSomething());
+      }
+    }
+  }
+
+  @Test
+  public void testRoutingKey() throws Exception {
+    try(IslandPool pool = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/pool-queues")
+        .createPoolAndStartup(3)) {
+
+      TestIFace iface = pool.generateProxy(TestIFace.class);
+      Map<String, String> owners = new HashMap<>();
+      for(int i = 0; i < 30; i++) {
+        owners.put("tenant-" + i, iface.whoAmI("tenant-" + i));
+      }
+      assertTrue(new HashSet<>(owners.values()).size() > 1);
+      for(int i = 0; i < 30; i++) {
+        assertEquals(owners.get("tenant-" + i), iface.whoAmI("tenant-" + i));
+      }
+    }
+  }
+
+}
@@ -1,8 +1,36 @@
 package com.monitorjbl.island;
 
+import net.openhft.chronicle.queue.RollCycles;
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class IslandTest {
 
@@ -21,4 +49,660 @@ public class IslandTest {
     }
   }
 
+  @Test
+  public void testAsync() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for(int i = 0; i < 100; i++) {
+        futures.add(iface.addOneAsync(i));
+      }
+      for(int i = 0; i < 100; i++) {
+        assertEquals(i + 1, (int) futures.get(i).get(5, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+  @Test
+  public void testStreaming() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      Iterator<Integer> iterator = iface.range(10000);
+      for(int i = 0; i < 10000; i++) {
+        assertTrue(iterator.hasNext());
+        assertEquals(i, (int) iterator.next());
+      }
+      assertFalse(iterator.hasNext());
+
+      try(Stream<Integer> stream = iface.rangeStream(Integer.MAX_VALUE)) {
+        assertEquals(Arrays.asList(0, 1, 2), stream.limit(3).collect(toList()));
+      }
+      assertEquals(0, island.outstanding());
+      assertEquals(2, iface.addOne(1));
+    }
+  }
+
+  @Test
+  public void testSlowStreamsFreeThreads() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .threads(2)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      List<Iterator<Integer>> iterators = new ArrayList<>();
+      for(int i = 0; i < 4; i++) {
+        Iterator<Integer> iterator = iface.range(Integer.MAX_VALUE);
+        assertEquals(0, (int) iterator.next());
+        iterators.add(iterator);
+      }
+      //every stream is out of credits, which must not keep the child's two threads from other calls
+      assertEquals(2, iface.addOne(1));
+      for(Iterator<Integer> iterator : iterators) {
+        assertEquals(1, (int) iterator.next());
+        ((AutoCloseable) iterator).close();
+      }
+      assertEquals(0, island.outstanding());
+    }
+  }
+
+  @Test
+  public void testSharedMemory() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .sharedMemorySize(16 * 1024 * 1024)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      byte[] data = new byte[4 * 1024 * 1024];
+      new Random(0).nextBytes(data);
+      long expected = 0;
+      for(byte b : data) {
+        expected += b;
+      }
+
+      //more data than the region holds, so blocks must be freed and reused
+      for(int i = 0; i < 20; i++) {
+        byte[] reversed = iface.reverse(data);
+        assertEquals(data.length, reversed.length);
+        assertEquals(data[0], reversed[data.length - 1]);
+        assertEquals(data[data.length - 1], reversed[0]);
+        assertEquals(expected, iface.sum(ByteBuffer.wrap(data)));
+      }
+      assertEquals(6, iface.sum(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+    }
+  }
+
+  @Test
+  public void testStats() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      for(int i = 0; i < 10; i++) {
+        iface.addOne(i);
+      }
+
+      MethodStats addOne = island.stats().method("TestIFace.addOne(int)");
+      assertEquals(10, addOne.getCalls());
+      assertEquals(0, addOne.getErrors());
+      assertEquals(10, addOne.latency(Stage.TOTAL).getCount());
+      assertTrue(addOne.latency(Stage.TOTAL).getP50() >= addOne.latency(Stage.EXECUTION).getP50());
+      assertTrue(addOne.latency(Stage.EXECUTION).getMax() > 0);
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("com.monitorjbl.island:type=Island,name=" + ObjectName.quote("target/queues"));
+      assertEquals(10L, server.getAttribute(name, "Calls"));
+      assertTrue(server.getAttribute(name, "Methods") instanceof TabularData);
+    }
+  }
+
+  @Test
+  public void testStartupFailure() throws Exception {
+    try {
+      Island.builder()
+          .entryClass(FailingEntry.class)
+          .queueBasePath("target/queues")
+          .createAndStartup();
+      fail("Expected startup to fail");
+    } catch(IllegalStateException e) {
+      assertEquals("Child failed to start", e.getMessage());
+      assertTrue(e.getCause().getMessage().contains("Refusing to start"));
+    }
+  }
+
+  @Test
+  public void testStartupExit() throws Exception {
+    long started = System.nanoTime();
+    try {
+      Island.builder()
+          .entryClass(ExitingEntry.class)
+          .queueBasePath("target/queues")
+          .createAndStartup();
+      fail("Expected startup to fail");
+    } catch(IllegalStateException e) {
+      //noticed as soon as the child exits rather than after the startup timeout
+      assertEquals("Child failed to start", e.getMessage());
+      assertTrue(e.getCause() instanceof IslandCrashedException);
+      assertTrue(e.getCause().getMessage().contains("exited with code 3"));
+      assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started) < 15);
+    }
+  }
+
+  @Test
+  public void testStandby() throws Exception {
+    try(StandbyPool standby = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/standby-queues")
+        .createStandby(1)) {
+
+      long deadline = System.currentTimeMillis() + 30000;
+      while(standby.available() < 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(1, standby.available());
+
+      try(Island island = standby.take()) {
+        assertEquals(2, island.generateProxy(TestIFace.class).addOne(1));
+      }
+    }
+  }
+
+  @Test
+  public void testExecutors() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .executor(ExecutorType.WORK_STEALING)
+        .threads(2)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      List<CompletableFuture<String>> slow = new ArrayList<>();
+      for(int i = 0; i < 4; i++) {
+        slow.add(iface.slowThreadName(1000));
+      }
+
+      //the slow calls have their own executor, so the default one answers while they're still queued on it
+      assertEquals(2, iface.addOne(1));
+      assertFalse(slow.get(slow.size() - 1).isDone());
+
+      for(CompletableFuture<String> future : slow) {
+        assertTrue(future.get(5, TimeUnit.SECONDS).startsWith("island-slow-"));
+      }
+
+      island.ping();
+      long deadline = System.currentTimeMillis() + 5000;
+      while(!island.stats().getExecutors().containsKey("slow") && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      ExecutorStats executor = island.stats().getExecutors().get("slow");
+      assertEquals(ExecutorType.FIXED, executor.getType());
+      assertEquals(2, executor.getThreads());
+      assertEquals(4, executor.getCompleted());
+      assertEquals(ExecutorType.WORK_STEALING, island.stats().getExecutors().get(ChildExecutors.DEFAULT).getType());
+    }
+  }
+
+  @Test
+  public void testOverload() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(CappedEntry.class)
+        .queueBasePath("target/queues")
+        .overloadPolicy(OverloadPolicy.FAIL_FAST)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      CompletableFuture<String> first = iface.slowThreadName(500);
+      CompletableFuture<String> second = iface.slowThreadName(500);
+
+      //the child only advertised room for two calls
+      try {
+        iface.addOne(1);
+        fail("Expected the call to be rejected");
+      } catch(IslandOverloadedException e) {
+        assertEquals(1, island.stats().getRejected());
+      }
+
+      first.get(5, TimeUnit.SECONDS);
+      second.get(5, TimeUnit.SECONDS);
+      assertEquals(2, iface.addOne(1));
+    }
+  }
+
+  @Test
+  public void testOverloadDeadline() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(CappedEntry.class)
+        .queueBasePath("target/queues")
+        .overloadPolicy(OverloadPolicy.DEADLINE)
+        .overloadTimeout(200)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      CompletableFuture<String> first = iface.slowThreadName(1000);
+      CompletableFuture<String> second = iface.slowThreadName(1000);
+
+      //waits out the overload timeout for one of the two slots, then gives up
+      long start = System.nanoTime();
+      try {
+        iface.addOne(1);
+        fail("Expected the call to be rejected");
+      } catch(IslandOverloadedException e) {
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        assertEquals(1, island.stats().getRejected());
+      }
+
+      first.get(5, TimeUnit.SECONDS);
+      second.get(5, TimeUnit.SECONDS);
+      assertEquals(2, iface.addOne(1));
+    }
+  }
+
+  @Test
+  public void testOverloadBlock() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(CappedEntry.class)
+        .queueBasePath("target/queues")
+        .overloadPolicy(OverloadPolicy.BLOCK)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      long start = System.nanoTime();
+      CompletableFuture<String> first = iface.slowThreadName(500);
+      CompletableFuture<String> second = iface.slowThreadName(500);
+
+      //can only be sent once one of the slow calls has answered and handed its slot back
+      assertEquals(2, iface.addOne(1));
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 500);
+      assertEquals(0, island.stats().getRejected());
+
+      first.get(5, TimeUnit.SECONDS);
+      second.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testOverloadFreesSharedMemory() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(CappedEntry.class)
+        .queueBasePath("target/queues")
+        .overloadPolicy(OverloadPolicy.FAIL_FAST)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      byte[] data = new byte[1024 * 1024];
+      CompletableFuture<String> first = iface.slowThreadName(500);
+      CompletableFuture<String> second = iface.slowThreadName(500);
+      for(int i = 0; i < 20; i++) {
+        try {
+          iface.reverse(data);
+          fail("Expected the call to be rejected");
+        } catch(IslandOverloadedException e) {
+          //the argument was already in shared memory when the call was turned away
+        }
+      }
+      assertEquals(0, island.sharedMemory().exportedBlocks());
+
+      first.get(5, TimeUnit.SECONDS);
+      second.get(5, TimeUnit.SECONDS);
+      assertEquals(data.length, iface.reverse(data).length);
+      assertEquals(0, island.sharedMemory().exportedBlocks());
+    }
+  }
+
+  @Test
+  public void testRollCycles() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/roll-queues")
+        .rollCycle(RollCycles.TEST_SECONDLY)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      long end = System.currentTimeMillis() + 3500;
+      for(int i = 0; System.currentTimeMillis() < end; i++) {
+        assertEquals(i + 1, iface.addOne(i));
+        Thread.sleep(5);
+      }
+
+      //cycles read past are deleted, leaving the current one and perhaps one the reader hasn't moved off yet
+      for(String side : new String[]{"parent", "child"}) {
+        File[] cycles = new File("target/roll-queues/" + side).listFiles((dir, name) -> name.endsWith(".cq4"));
+        assertTrue(side + " kept " + Arrays.toString(cycles), cycles.length <= 2);
+      }
+    }
+  }
+
+  @Test
+  public void testTransports() throws Exception {
+    for(TransportType transport : TransportType.values()) {
+      try(Island island = Island.builder()
+          .entryClass(TestEntry.class)
+          .queueBasePath("target/transport-queues")
+          .transport(transport)
+          .createAndStartup()) {
+
+        TestIFace iface = island.generateProxy(TestIFace.class);
+        assertEquals("something", iface.doSomething());
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+          futures.add(iface.addOneAsync(i));
+        }
+        for(int i = 0; i < 1000; i++) {
+          assertEquals(transport.name(), i + 1, (int) futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+
+        Iterator<Integer> iterator = iface.range(10000);
+        for(int i = 0; i < 10000; i++) {
+          assertEquals(i, (int) iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+      }
+    }
+  }
+
+  @Test
+  public void testOneWay() throws Exception {
+    CompletableFuture<String> failure = new CompletableFuture<>();
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .oneWayErrorListener((method, error) -> failure.complete(method.getName() + ": " + error.getMessage()))
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      for(int i = 0; i < 100; i++) {
+        iface.record(i);
+      }
+      assertEquals(0, island.outstanding());
+
+      iface.recordOrFail(-1);
+      assertEquals("recordOrFail: java.lang.IllegalArgumentException: Cannot record -1",
+          failure.get(5, TimeUnit.SECONDS));
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while(iface.recorded() < 100 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(100, iface.recorded());
+    }
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      assertEquals(0, iface.lookup("a"));
+      assertEquals(0, iface.lookup("a"));
+      assertEquals(0, iface.lookup("b"));
+      assertEquals(0, iface.lookup("c"));
+      assertEquals(3, island.stats().method("TestIFace.lookup(java.lang.String)").getCalls());
+
+      //the child drops the cached result once it has changed
+      iface.changeLookup("c", 42);
+      long deadline = System.currentTimeMillis() + 5000;
+      while(iface.lookup("c") != 42 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(42, iface.lookup("c"));
+
+      CacheStats stats = island.stats().cache("TestIFace.lookup(java.lang.String)");
+      assertEquals(2, stats.getSize());
+      assertEquals(1, stats.getEvictions());
+      assertEquals(1, stats.getInvalidations());
+      assertTrue(stats.getHitRate() > 0);
+    }
+  }
+
+  @Test
+  public void testCoalesce() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      int callers = 16;
+      CyclicBarrier barrier = new CyclicBarrier(callers);
+      ExecutorService executor = Executors.newFixedThreadPool(callers);
+      try {
+        List<Future<Integer>> results = new ArrayList<>();
+        for(int i = 0; i < callers; i++) {
+          results.add(executor.submit(() -> {
+            barrier.await();
+            return iface.slowLoad("hot");
+          }));
+        }
+        for(Future<Integer> result : results) {
+          assertTrue(result.get() > 0);
+        }
+      } finally {
+        executor.shutdown();
+      }
+
+      MethodStats stats = island.stats().method("TestIFace.slowLoad(java.lang.String)");
+      assertEquals(callers, stats.getCalls() + stats.getCoalesced());
+      assertTrue(stats.getCoalesced() > 0);
+
+      //once the shared call has finished, the next one goes to the child again
+      assertEquals(stats.getCalls() + 1, iface.slowLoad("hot"));
+    }
+  }
+
+  @Test
+  public void testCoalesceTimeout() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      int callers = 4;
+      CyclicBarrier barrier = new CyclicBarrier(callers);
+      ExecutorService executor = Executors.newFixedThreadPool(callers);
+      try {
+        List<Future<Throwable>> results = new ArrayList<>();
+        for(int i = 0; i < callers; i++) {
+          results.add(executor.submit(() -> {
+            barrier.await();
+            try {
+              iface.hang("stuck");
+              return null;
+            } catch(RuntimeException e) {
+              return e;
+            }
+          }));
+        }
+        //every caller of the hung call gives up after the default timeout, not just the one that sent it
+        for(Future<Throwable> result : results) {
+          Throwable error = result.get(30, TimeUnit.SECONDS);
+          assertTrue(String.valueOf(error), error != null && error.getCause() instanceof TimeoutException);
+        }
+      } finally {
+        executor.shutdown();
+      }
+
+      //and the shared call no longer holds a slot
+      assertEquals(0, island.stats().getInFlight());
+      assertEquals(2, iface.addOne(1));
+    }
+  }
+
+  @Test
+  public void testSerializationCodec() {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .codec(SerializationCodec.class)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      assertEquals("something", iface.doSomething());
+      assertEquals(2, iface.addOne(1));
+      assertEquals(Arrays.asList(0, 1, 2), iface.rangeStream(3).collect(toList()));
+    }
+  }
+
+  @Test
+  public void testGeneratedProxies() {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      assertFalse(Proxy.isProxyClass(iface.getClass()));
+      assertEquals(2, iface.addOne(1));
+      assertEquals(iface, iface);
+      assertEquals("Island proxy for " + TestIFace.class.getName(), iface.toString());
+
+      TestCounter counter = island.generateProxy(TestCounter.class);
+      assertEquals(-117L, counter.add(1, 2L, 3.5, true, (short) 11));
+      assertFalse(ManagementFactory.getRuntimeMXBean().getName().equals(counter.jvmName()));
+      assertEquals("local", counter.local());
+    }
+  }
+
+  @Test
+  public void testGarbageFree() {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .garbageFree(true)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      String name = iface.whoAmI("key");
+      int calls = 20000;
+      long total = 0;
+      //warms up the JIT and the thread's pooled call, then measures what the calling thread allocates
+      for(int round = 0; round < 2; round++) {
+        long before = allocatedBytes();
+        for(int i = 0; i < calls; i++) {
+          total += iface.addOne(i);
+          total += iface.whoAmI("key").length();
+        }
+        long perCall = (allocatedBytes() - before) / (calls * 2);
+        if(round == 1) {
+          assertTrue("Allocated " + perCall + " bytes per call", perCall == 0);
+        }
+      }
+      assertEquals(name, iface.whoAmI("key"));
+      assertTrue(total > 0);
+    }
+  }
+
+  @Test
+  public void testGarbageFreeChild() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .garbageFree(true)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      int calls = 20000;
+      long total = 0;
+      //small ints box to cached Integers, so neither the child nor the parent's receiver thread needs a new value
+      for(int round = 0; round < 2; round++) {
+        long child = childAllocatedBytes(island);
+        long receiver = allocatedBytes("receiver");
+        for(int i = 0; i < calls; i++) {
+          total += iface.addOne(i % 100);
+        }
+        //less than the smallest object, which leaves room for the pings that report the child's figure
+        long receiverPerCall = (allocatedBytes("receiver") - receiver) / calls;
+        long childPerCall = (childAllocatedBytes(island) - child) / calls;
+        if(round == 1) {
+          assertTrue("Receiver allocated " + receiverPerCall + " bytes per call", receiverPerCall < 16);
+          assertTrue("Child allocated " + childPerCall + " bytes per call", childPerCall < 16);
+        }
+      }
+      assertTrue(total > 0);
+    }
+  }
+
+  @Test
+  public void testCrashRecovery() throws Exception {
+    try(Island island = Island.builder()
+        .entryClass(TestEntry.class)
+        .queueBasePath("target/queues")
+        .restartOnCrash(true)
+        .restartBackoff(50)
+        .createAndStartup()) {
+
+      TestIFace iface = island.generateProxy(TestIFace.class);
+      assertEquals(2, iface.addOne(1));
+      long pid = island.getProcessPID();
+      CompletableFuture<String> pending = iface.slowThreadName(10000);
+
+      long killed = System.nanoTime();
+      assertEquals(0, new ProcessBuilder("kill", "-9", String.valueOf(pid)).start().waitFor());
+      try {
+        pending.get(5, TimeUnit.SECONDS);
+        fail("Expected the pending call to fail");
+      } catch(ExecutionException e) {
+        assertTrue(e.getCause() instanceof IslandCrashedException);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - killed) < 2000);
+      }
+
+      //the same proxy works again once the new child has registered its classes
+      long deadline = System.currentTimeMillis() + 30000;
+      while(true) {
+        try {
+          assertEquals(3, iface.addOne(2));
+          break;
+        } catch(IslandCrashedException e) {
+          assertTrue("Child was not restarted", System.currentTimeMillis() < deadline);
+          Thread.sleep(50);
+        }
+      }
+      assertTrue(island.getProcessPID() != pid);
+    }
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static long allocatedBytes(String threadName) {
+    long total = 0;
+    for(Thread thread : Thread.getAllStackTraces().keySet()) {
+      if(thread.getName().equals(threadName)) {
+        total += ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(thread.getId());
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Pings the child and waits for its reply to update the figure it reports.
+   */
+  private static long childAllocatedBytes(Island island) throws InterruptedException {
+    long previous = island.stats().getChildAllocatedBytes();
+    island.ping();
+    while(island.stats().getChildAllocatedBytes() == previous) {
+      Thread.sleep(5);
+    }
+    return island.stats().getChildAllocatedBytes();
+  }
 }
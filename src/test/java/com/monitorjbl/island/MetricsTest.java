@@ -0,0 +1,69 @@
+package com.monitorjbl.island;
+
+import com.monitorjbl.island.domain.RPCMessage;
+import com.monitorjbl.island.domain.RPCResponse;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+  @Test
+  public void testHistogramBuckets() {
+    long previous = -1;
+    for(long value = 0; value < 1_000_000; value += 7) {
+      int index = LatencyHistogram.index(value);
+      assertTrue(LatencyHistogram.upperBound(index) >= value);
+      assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+      assertTrue(index >= previous);
+      previous = index;
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for(int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    LatencySummary summary = histogram.summary();
+    assertEquals(1000, summary.getCount());
+    assertEquals(1_000_000, summary.getMax());
+    assertEquals(500_000, summary.getP50(), 500_000 * 0.125);
+    assertEquals(990_000, summary.getP99(), 990_000 * 0.125);
+  }
+
+  @Test
+  public void testRecordDoesNotAllocate() {
+    Metrics metrics = new Metrics(() -> 0);
+    metrics.register(0, "TestIFace.addOne(int)");
+    RPCMessage message = RPCMessage.invocation();
+    message.setStartNanos(1);
+    message.setEnqueuedNanos(2);
+    message.setSentNanos(3);
+    RPCResponse response = new RPCResponse(1, false, null);
+    response.setReceivedNanos(100);
+    response.setQueueNanos(10);
+    response.setExecutionNanos(20);
+
+    //warm up so the JIT and class loading are out of the way
+    for(int i = 0; i < 100_000; i++) {
+      metrics.record(message, response);
+    }
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(thread);
+    for(int i = 0; i < 100_000; i++) {
+      metrics.record(message, response);
+    }
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    assertTrue("record allocated " + allocated + " bytes", allocated < 1024);
+    assertEquals(200_000, metrics.snapshot().method("TestIFace.addOne(int)").getCalls());
+  }
+
+}
@@ -0,0 +1,48 @@
+package com.monitorjbl.island;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SendQueueTest {
+
+  @Test
+  public void test() {
+    SendQueue<Integer> queue = new SendQueue<>(4);
+    for(int lap = 0; lap < 3; lap++) {
+      for(int i = 0; i < 4; i++) {
+        assertTrue(queue.offer(i, () -> true));
+      }
+      for(int i = 0; i < 4; i++) {
+        assertEquals(i, (int) queue.poll());
+      }
+      assertNull(queue.poll());
+    }
+  }
+
+  @Test
+  public void testGivesUpWhenClosed() throws Exception {
+    SendQueue<Integer> queue = new SendQueue<>(4);
+    for(int i = 1; i <= 4; i++) {
+      assertTrue(queue.offer(i, () -> true));
+    }
+
+    //nothing is polling, so the producer only gets out once the queue is no longer open
+    AtomicBoolean open = new AtomicBoolean(true);
+    AtomicBoolean offered = new AtomicBoolean(true);
+    Thread producer = new Thread(() -> offered.set(queue.offer(5, open::get)));
+    producer.start();
+    producer.join(100);
+    assertTrue(producer.isAlive());
+    open.set(false);
+    producer.join(5000);
+    assertFalse(producer.isAlive());
+    assertFalse(offered.get());
+    assertEquals(1, (int) queue.poll());
+  }
+}
@@ -0,0 +1,115 @@
+package com.monitorjbl.island;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaggedCodecTest {
+
+  @Test
+  public void testBuiltInTypes() {
+    TaggedCodec codec = new TaggedCodec();
+    for(Object value : Arrays.asList(1, -7L, true, false, (byte) 3, (short) 300, 'x', 1.5f, Math.PI, "h\u00e9llo",
+        new ArrayList<>(Arrays.asList(1, "two", null)), new HashSet<>(Arrays.asList("a", "b")),
+        TimeUnit.SECONDS)) {
+      assertEquals(value, codec.decode(codec.encode(value)));
+    }
+    assertNull(codec.decode(codec.encode(null)));
+    assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) codec.decode(codec.encode(new byte[]{1, 2, 3})));
+    assertArrayEquals(new int[]{1, -2}, (int[]) codec.decode(codec.encode(new int[]{1, -2})));
+    assertArrayEquals(new String[]{"a", null}, (String[]) codec.decode(codec.encode(new String[]{"a", null})));
+
+    Map<String, List<Integer>> map = new LinkedHashMap<>();
+    map.put("z", new ArrayList<>(Arrays.asList(1, 2)));
+    map.put("a", new ArrayList<>());
+    Object decoded = codec.decode(codec.encode(map));
+    assertEquals(LinkedHashMap.class, decoded.getClass());
+    assertEquals(map, decoded);
+    assertEquals(Arrays.asList("z", "a"), new ArrayList<>(((Map<?, ?>) decoded).keySet()));
+
+    //other classes, like this immutable list, fall back to Java serialization and keep their class
+    List<Integer> fixed = Arrays.asList(1, 2);
+    assertEquals(fixed.getClass(), codec.decode(codec.encode(fixed)).getClass());
+    assertEquals(5, codec.encode(42).length);
+  }
+
+  @Test
+  public void testDecodesRange() {
+    for(Codec codec : Arrays.asList(new TaggedCodec(), new SerializationCodec())) {
+      byte[] encoded = codec.encode("value");
+      byte[] padded = new byte[encoded.length + 6];
+      System.arraycopy(encoded, 0, padded, 3, encoded.length);
+      assertEquals("value", codec.decode(padded, 3, encoded.length));
+    }
+  }
+
+  @Test
+  public void testStrings() {
+    TaggedCodec codec = new TaggedCodec();
+    for(String value : Arrays.asList("", "plain", "\u00e9\u20ac", "\ud83d\ude00 pair", "lone \ud83d", "\ude00 lone",
+        "\ude00\ud83d reversed", "nul \u0000")) {
+      assertEquals(value, codec.decode(codec.encode(value)));
+    }
+    //a lone surrogate must not collide with the '?' it used to be replaced with
+    assertFalse(Arrays.equals(codec.encode("a\ud83d"), codec.encode("a?")));
+  }
+
+  @Test
+  public void testRegisteredClasses() {
+    TaggedCodec codec = new TaggedCodec();
+    codec.register(Point.class);
+    codec.register(Label.class);
+    codec.register(Label.Kind.class);
+    TaggedCodec peer = new TaggedCodec();
+    peer.register(Point.class);
+    peer.register(Label.class);
+    peer.register(Label.Kind.class);
+
+    Label label = new Label(new Point(3, -4), "origin", Label.Kind.NAMED);
+    byte[] encoded = codec.encode(label);
+    Label decoded = (Label) peer.decode(encoded);
+    assertEquals(3, decoded.point.x);
+    assertEquals(-4, decoded.point.y);
+    assertEquals("origin", decoded.text);
+    assertEquals(Label.Kind.NAMED, decoded.kind);
+    assertTrue(encoded.length < new SerializationCodec().encode(label).length / 4);
+  }
+
+  static class Point implements Serializable {
+    final int x;
+    final int y;
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  static class Label implements Serializable {
+    enum Kind { NAMED, ANONYMOUS }
+
+    private final Point point;
+    private final String text;
+    private final Kind kind;
+    private transient int hash;
+
+    Label(Point point, String text, Kind kind) {
+      this.point = point;
+      this.text = text;
+      this.kind = kind;
+    }
+  }
+}
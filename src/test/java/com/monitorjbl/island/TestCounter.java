@@ -0,0 +1,37 @@
+package com.monitorjbl.island;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A plain class, rather than an interface, to proxy.
+ */
+public class TestCounter {
+  private final long base;
+  private final String where;
+
+  protected TestCounter() {
+    this(0, "local");
+  }
+
+  public TestCounter(long base) {
+    this(base, "remote");
+  }
+
+  private TestCounter(long base, String where) {
+    this.base = base;
+    this.where = where;
+  }
+
+  public long add(int a, long b, double c, boolean negate, short d) {
+    long sum = base + a + b + (long) c + d;
+    return negate ? -sum : sum;
+  }
+
+  public String jvmName() {
+    return ManagementFactory.getRuntimeMXBean().getName();
+  }
+
+  public final String local() {
+    return where;
+  }
+}
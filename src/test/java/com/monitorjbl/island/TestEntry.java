@@ -10,6 +10,7 @@ public class TestEntry implements IslandEntry {
 
   Map<Class, Object> impls = new HashMap<Class, Object>() {{
     put(TestIFace.class, new TestIFaceImpl());
+    put(TestCounter.class, new TestCounter(100));
   }};
 
   @Override
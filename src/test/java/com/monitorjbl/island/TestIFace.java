@@ -1,6 +1,31 @@
 package com.monitorjbl.island;
 
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
 public interface TestIFace {
   String doSomething();
   int addOne(int val);
+  CompletableFuture<Integer> addOneAsync(int val);
+  String whoAmI(@RoutingKey String key);
+  Iterator<Integer> range(int count);
+  Stream<Integer> rangeStream(int count);
+  byte[] reverse(byte[] data);
+  long sum(ByteBuffer buffer);
+  @ExecuteOn(value = "slow", threads = 2)
+  CompletableFuture<String> slowThreadName(int millis);
+  @OneWay
+  void record(int value);
+  @OneWay
+  void recordOrFail(int value);
+  int recorded();
+  @Cached(maxSize = 2)
+  int lookup(String key);
+  void changeLookup(String key, int value);
+  @Coalesce
+  int slowLoad(String key);
+  @Coalesce
+  int hang(String key);
 }
@@ -1,6 +1,20 @@
 package com.monitorjbl.island;
 
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 public class TestIFaceImpl implements TestIFace {
+  private final AtomicInteger recorded = new AtomicInteger();
+  private final Map<String, Integer> lookups = new ConcurrentHashMap<>();
+  private final AtomicInteger loads = new AtomicInteger();
+
   @Override
   public String doSomething() {
     return "something";
@@ -10,4 +24,104 @@ public class TestIFaceImpl implements TestIFace {
   public int addOne(int val) {
     return val + 1;
   }
+
+  @Override
+  public CompletableFuture<Integer> addOneAsync(int val) {
+    return CompletableFuture.supplyAsync(() -> val + 1);
+  }
+
+  @Override
+  public String whoAmI(String key) {
+    return ManagementFactory.getRuntimeMXBean().getName();
+  }
+
+  @Override
+  public Iterator<Integer> range(int count) {
+    return IntStream.range(0, count).iterator();
+  }
+
+  @Override
+  public Stream<Integer> rangeStream(int count) {
+    return IntStream.range(0, count).boxed();
+  }
+
+  @Override
+  public byte[] reverse(byte[] data) {
+    byte[] reversed = new byte[data.length];
+    for(int i = 0; i < data.length; i++) {
+      reversed[i] = data[data.length - 1 - i];
+    }
+    return reversed;
+  }
+
+  @Override
+  public long sum(ByteBuffer buffer) {
+    if(!buffer.isReadOnly()) {
+      throw new IllegalArgumentException("Expected a read-only view");
+    }
+    long sum = 0;
+    while(buffer.hasRemaining()) {
+      sum += buffer.get();
+    }
+    return sum;
+  }
+
+  @Override
+  public CompletableFuture<String> slowThreadName(int millis) {
+    try {
+      Thread.sleep(millis);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return CompletableFuture.completedFuture(Thread.currentThread().getName());
+  }
+
+  @Override
+  public void record(int value) {
+    recorded.incrementAndGet();
+  }
+
+  @Override
+  public void recordOrFail(int value) {
+    if(value < 0) {
+      throw new IllegalArgumentException("Cannot record " + value);
+    }
+    recorded.incrementAndGet();
+  }
+
+  @Override
+  public int recorded() {
+    return recorded.get();
+  }
+
+  @Override
+  public int lookup(String key) {
+    return lookups.getOrDefault(key, 0);
+  }
+
+  @Override
+  public void changeLookup(String key, int value) {
+    lookups.put(key, value);
+    CacheControl.invalidate(TestIFace.class, "lookup", key);
+  }
+
+  @Override
+  public int slowLoad(String key) {
+    try {
+      Thread.sleep(300);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return loads.incrementAndGet();
+  }
+
+  @Override
+  public int hang(String key) {
+    try {
+      Thread.sleep(60000);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return 0;
+  }
 }
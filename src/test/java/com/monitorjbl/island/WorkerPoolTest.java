@@ -0,0 +1,66 @@
+package com.monitorjbl.island;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkerPoolTest {
+
+  @Test
+  public void test() throws Exception {
+    WorkerPool pool = new WorkerPool("test", 4);
+    int tasks = 100000;
+    AtomicInteger ran = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(tasks);
+    //several submitters, and more tasks than the ring holds, so some of them go through the overflow queue
+    Thread[] submitters = new Thread[4];
+    for(int i = 0; i < submitters.length; i++) {
+      submitters[i] = new Thread(() -> {
+        for(int j = 0; j < tasks / submitters.length; j++) {
+          pool.execute(() -> {
+            ran.incrementAndGet();
+            done.countDown();
+          });
+        }
+      });
+      submitters[i].start();
+    }
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    assertEquals(tasks, ran.get());
+
+    //a task is only counted once it has returned, after it let the latch go
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(tasks, pool.completed());
+  }
+
+  @Test
+  public void testWakesIdleThreads() throws Exception {
+    WorkerPool pool = new WorkerPool("test", 2);
+    for(int round = 0; round < 100; round++) {
+      //both threads have to be running at once for either task to finish
+      CountDownLatch started = new CountDownLatch(2);
+      CountDownLatch done = new CountDownLatch(2);
+      for(int i = 0; i < 2; i++) {
+        pool.execute(() -> {
+          started.countDown();
+          try {
+            if(started.await(5, TimeUnit.SECONDS)) {
+              done.countDown();
+            }
+          } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      Thread.sleep(1);
+    }
+    pool.shutdownNow();
+  }
+}